@@ -0,0 +1,77 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.iapetus;
+
+import ca.team3161.lib.robot.pid.FeedForwardTable;
+import ca.team3161.lib.robot.pid.GainSchedule;
+import ca.team3161.lib.robot.pid.PIDulum;
+
+/**
+ * The configuration of the Shooter's fork loop. Kept apart from the Shooter,
+ * which needs the robot hardware, so that the offline PID tuner can build
+ * and simulate exactly the loop which runs on the robot.
+ */
+public final class ForkPid {
+    
+    // Uninstantiable
+    private ForkPid(){}
+    
+    public static final float DEADBAND = 0.75f;
+    public static final float KP = -0.035f;
+    public static final float KI = 0.0f;
+    public static final float KD = 0.065f;
+    /* the balance point of the fork, and the linear gravity model used until calibrated */
+    public static final float OFFSET_ANGLE = 135.0f;
+    public static final float TORQUE_CONSTANT = 0.001f;
+    /* the pot is median filtered over this many samples */
+    public static final int MEDIAN_WINDOW = 3;
+    public static final long PERIOD = 20;
+    
+    /* the fork presets, in increasing order */
+    private static final float[] PRESETS = {
+            RobotConstants.Positions.INTAKE, RobotConstants.Positions.LOWGOAL,
+            RobotConstants.Positions.SHOOTING, RobotConstants.Positions.TRUSS,
+            RobotConstants.Positions.START};
+    
+    /**
+     * Configure a fork loop: timed at PERIOD, held against gravity by a
+     * FeedForwardTable over the presets, which starts out matching the linear
+     * torque model, and with its gains scheduled by target preset, starting
+     * out at the loop's own gains.
+     * @param pidulum a loop created with the constants above
+     * @return the same loop
+     */
+    public static PIDulum configure(final PIDulum pidulum) {
+        pidulum.setTimed(PERIOD);
+        final FeedForwardTable table = new FeedForwardTable(PRESETS);
+        for (int i = 0; i < table.size(); ++i) {
+            table.setOutput(i, pidulum.getFeedForward(table.getPosition(i)));
+        }
+        pidulum.setFeedForwardTable(table);
+        pidulum.setGainSchedule(new GainSchedule(PRESETS, pidulum.getP(), pidulum.getI(), pidulum.getD()), true);
+        return pidulum;
+    }
+}
@@ -32,13 +32,38 @@
 
 package ca.team3161.iapetus;
 
+import ca.team3161.lib.robot.AutonomousRoutine;
+import ca.team3161.lib.robot.ReplayRoutine;
 import ca.team3161.lib.robot.ThreadedAutoRobot;
 import ca.team3161.lib.utils.controls.*;
+import ca.team3161.lib.robot.Condition;
 import ca.team3161.lib.robot.Drivetrain;
 import ca.team3161.lib.robot.PIDDrivetrain;
+import ca.team3161.lib.robot.Subsystem;
+import ca.team3161.lib.robot.SubsystemWorkerPool;
+import ca.team3161.lib.robot.command.Command;
+import ca.team3161.lib.robot.command.CommandScheduler;
+import ca.team3161.lib.robot.command.DriveDistanceCommand;
+import ca.team3161.lib.robot.command.InstantCommand;
+import ca.team3161.lib.robot.command.ParallelGroup;
+import ca.team3161.lib.robot.command.RaceGroup;
+import ca.team3161.lib.robot.command.SequentialGroup;
+import ca.team3161.lib.robot.command.TurnCommand;
+import ca.team3161.lib.robot.command.WaitCommand;
+import ca.team3161.lib.robot.command.WaitUntilCommand;
 import ca.team3161.lib.robot.pid.EncoderPidSrc;
+import ca.team3161.lib.robot.pid.EncoderRatePidSrc;
+import ca.team3161.lib.robot.pid.FeedForwardCalibrator;
+import ca.team3161.lib.robot.pid.FeedForwardTable;
+import ca.team3161.lib.robot.pid.GainSchedule;
+import ca.team3161.lib.robot.pid.GainStore;
 import ca.team3161.lib.robot.pid.GyroPidSrc;
+import ca.team3161.lib.robot.pid.MotionProfile;
 import ca.team3161.lib.robot.pid.PID;
+import ca.team3161.lib.robot.pid.RelayAutotuner;
+import ca.team3161.lib.robot.pid.SensorSnapshot;
+import ca.team3161.lib.utils.Utils;
+import ca.team3161.lib.utils.controls.InputRecording;
 import ca.team3161.lib.utils.controls.Joystick;
 import edu.wpi.first.wpilibj.Compressor;
 import edu.wpi.first.wpilibj.SpeedController;
@@ -49,7 +74,9 @@ import edu.wpi.first.wpilibj.Encoder;
 import edu.wpi.first.wpilibj.Gyro;
 import edu.wpi.first.wpilibj.Relay;
 import com.team254.lib.CheesyVisionServer;
+import java.io.IOException;
 import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.Utility;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
@@ -66,16 +93,49 @@ public class Iapetus extends ThreadedAutoRobot {
     private final Shooter shooter = Shooter.getInstance();
     private final Gyro gyro = new Gyro(1);
     private final Encoder leftEncoder = new Encoder(2, 3), rightEncoder = new Encoder(4, 5);
+    private final SensorSnapshot driveSensors = new SensorSnapshot(20);
+    private final PID leftDrivePid = new PID(driveSensors.register(new EncoderPidSrc(leftEncoder)),
+            350.0f, -0.008f, -0.0f, 0.018f);
+    private final PID rightDrivePid = new PID(driveSensors.register(new EncoderPidSrc(rightEncoder)),
+            350.0f, -0.008f, -0.0f, 0.018f);
+    private final PID turnPid = new PID(driveSensors.register(new GyroPidSrc(gyro)), 4.0f, 0.9f, 0.0f, 0.6f);
     private final PIDDrivetrain pidDrive = new PIDDrivetrain(leftDrive, rightDrive,
-            new PID(new EncoderPidSrc(leftEncoder), 350.0f, -0.008f, -0.0f, 0.018f),
-            new PID(new EncoderPidSrc(rightEncoder), 350.0f, -0.008f, -0.0f, 0.018f),
-            new PID(new GyroPidSrc(gyro), 4.0f, 0.9f, 0.0f, 0.6f));
+            leftDrivePid, rightDrivePid, turnPid,
+            new PID(driveSensors.register(new EncoderRatePidSrc(leftEncoder)), 0.0f, -0.0001f, 0.0f, 0.0f),
+            new PID(driveSensors.register(new EncoderRatePidSrc(rightEncoder)), 0.0f, -0.0001f, 0.0f, 0.0f),
+            RobotConstants.Auto.DRIVE_FULL_RATE);
     private final Compressor compressor = new Compressor(7, 2);
+    private final Telemetry telemetry = new Telemetry(shooter, pidDrive);
+    private final CommandScheduler autoCommands = new CommandScheduler();
+    private final MotionProfile driveProfile = new MotionProfile(RobotConstants.Auto.DRIVE_MAX_VELOCITY,
+            RobotConstants.Auto.DRIVE_MAX_ACCELERATION, RobotConstants.Auto.DRIVE_MAX_JERK,
+            RobotConstants.Auto.PROFILE_PERIOD);
+    private final MotionProfile turnProfile = new MotionProfile(RobotConstants.Auto.TURN_MAX_VELOCITY,
+            RobotConstants.Auto.TURN_MAX_ACCELERATION, RobotConstants.Auto.TURN_MAX_JERK,
+            RobotConstants.Auto.PROFILE_PERIOD);
 
     private final CheesyVisionServer visionServer = CheesyVisionServer.getInstance(RobotConstants.Auto.VISION_PORT);
 
     private final LogitechDualAction gamepad = new LogitechDualAction(RobotConstants.Gamepad.PORT, RobotConstants.Gamepad.DEADZONE);
     private final LogitechDualAction gamepad2 = new LogitechDualAction(RobotConstants.Gamepad2.PORT, RobotConstants.Gamepad2.DEADZONE);
+    private final LogitechDualAction[] gamepads = {gamepad, gamepad2};
+    private final InputRecording recording = new InputRecording(RobotConstants.Replay.CAPACITY, 2, 0);
+    private boolean recordingArmed = false;
+    
+    private final GainStore gains = new GainStore(RobotConstants.Tuning.GAINS_FILE);
+    private final RelayAutotuner forkTuner = new RelayAutotuner(shooter.getForkPid().getSrc(),
+            RobotConstants.Tuning.FORK_RELAY, RobotConstants.Tuning.FORK_HYSTERESIS, true, RobotConstants.Tuning.CYCLES);
+    private final RelayAutotuner leftTuner = new RelayAutotuner(leftDrivePid.getSrc(),
+            RobotConstants.Tuning.DRIVE_RELAY, RobotConstants.Tuning.DRIVE_HYSTERESIS, true, RobotConstants.Tuning.CYCLES);
+    private final RelayAutotuner rightTuner = new RelayAutotuner(rightDrivePid.getSrc(),
+            RobotConstants.Tuning.DRIVE_RELAY, RobotConstants.Tuning.DRIVE_HYSTERESIS, true, RobotConstants.Tuning.CYCLES);
+    private final FeedForwardCalibrator forkCalibrator = new FeedForwardCalibrator(shooter.getForkPid().getSrc(),
+            shooter.getForkFeedForward(), RobotConstants.Tuning.FEEDFORWARD_KP, RobotConstants.Tuning.FEEDFORWARD_KI,
+            RobotConstants.Tuning.FEEDFORWARD_TOLERANCE, RobotConstants.Tuning.FEEDFORWARD_MAX_RATE,
+            RobotConstants.Tuning.FEEDFORWARD_SETTLE_TICKS);
+    private boolean tuning = false, tuningFork = false, calibrating = false;
+    private long tuneStartTime = 0;
+    private int tuningPreset = 0;
 
     private DriverStation.Alliance alliance = DriverStation.Alliance.kInvalid;
     private final Relay underglowController = new Relay(1);
@@ -83,6 +143,7 @@ public class Iapetus extends ThreadedAutoRobot {
     private static final Relay.Value RED_UNDERGLOW = Relay.Value.kReverse;
     private static final Relay.Value PURPLE_UNDERGLOW = Relay.Value.kOn;
     private int ledCount = 1;
+    private volatile int shotsBeforeFiring = 0;
 
     /**
      * This function is run when the robot is first started up and should be
@@ -97,8 +158,17 @@ public class Iapetus extends ThreadedAutoRobot {
         dsLcd.println(0, "Alliance: " + alliance.name.toUpperCase());
         SmartDashboard.putString("Mode", alliance.name.toUpperCase() + " ALLIANCE");
 
+        SubsystemWorkerPool.getInstance().prestart();
+        configureDrivePids();
+        loadGains();
         shooter.disableAll();
         shooter.start();
+        telemetry.start();
+        autoRegistry.add(new OneBallAuto());
+        autoRegistry.add(new ReplayRoutine("Replay", this, gamepads,
+                new InputRecording(RobotConstants.Replay.CAPACITY, 2, 0), RobotConstants.Replay.FILE));
+        SmartDashboard.putString("Auto Routine", "One Ball");
+        SmartDashboard.putBoolean("Record Replay", false);
         shooter.setForkAngle(RobotConstants.Positions.START);
         shooter.closeClaw();
         shooter.drawWinch();
@@ -108,6 +178,48 @@ public class Iapetus extends ThreadedAutoRobot {
         visionServer.start();
     }
     
+    /**
+     * Make the drive loops settle before reporting their targets reached,
+     * and sample their sensors together once per iteration
+     */
+    private void configureDrivePids() {
+        pidDrive.setSensorSnapshot(driveSensors);
+        leftDrivePid.setSettle(RobotConstants.Auto.SETTLE_TICKS, RobotConstants.Auto.DRIVE_SETTLE_RATE);
+        rightDrivePid.setSettle(RobotConstants.Auto.SETTLE_TICKS, RobotConstants.Auto.DRIVE_SETTLE_RATE);
+        turnPid.setSettle(RobotConstants.Auto.SETTLE_TICKS, RobotConstants.Auto.TURN_SETTLE_RATE);
+    }
+    
+    /**
+     * Apply any PID gains saved by autotuning, and the fork feed forward
+     * saved by calibration, in test mode
+     */
+    private void loadGains() {
+        try {
+            gains.load();
+        } catch (final IOException e) {
+            // nothing tuned yet, keep the default gains
+            return;
+        }
+        gains.apply("fork", shooter.getForkGains());
+        gains.apply("left drive", leftDrivePid);
+        gains.apply("right drive", rightDrivePid);
+        gains.apply("fork feed forward", shooter.getForkFeedForward());
+    }
+    
+    /**
+     * Stop any autonomous Commands and the PID drivetrain, and wait for it
+     * to give back the drive SpeedControllers before anything else uses them
+     */
+    private void stopPidDrive() {
+        autoCommands.cancel();
+        try {
+            if (!pidDrive.cancelAndAwait(RobotConstants.Auto.DRIVE_STOP_TIMEOUT)) {
+                dsLcd.println(1, "PID drive not stopped");
+            }
+        } catch (final InterruptedException e) {
+        }
+    }
+    
     public void restartEncoders() {
         leftEncoder.stop();
         rightEncoder.stop();
@@ -118,78 +230,140 @@ public class Iapetus extends ThreadedAutoRobot {
     }
 
     /**
-     * This method is invoked by a new Thread.
-     * The main robot thread's role during autonomous is simply to maintain
-     * core robot functionality, eg feeding the Watchdog and responding to
-     * FMS events. A new Thread handles autonomous behaviour so that we can
-     * use Thread.sleep() rather than checking Timer values.
-     * This method's semantics are one-shot, as opposed to continuous looping
-     * as provided by autonomousPeriodic or autonomousContinuous. This allows
-     * simpler scripting and also avoids busy-wait conditions.
-     * @throws Exception 
+     * Build the autonomous routine. The fork moves to the firing position
+     * while the robot drives up and corrects its bearing, and returns to
+     * the start position while the robot turns around. The drive and the
+     * turn follow the motion profiles generated in prepare(). The turn runs
+     * from the heading the robot started at to 180 degrees from it, whatever
+     * the bearing correction did.
+     * @return the autonomous routine Command
      */
-    public void autonomousThreaded() throws Exception {
-        underglowController.set(PURPLE_UNDERGLOW);
-        compressor.stop();
-        visionServer.reset();
-        visionServer.startSamplingCounts();
-        pidDrive.reset();
-        restartEncoders();
-        gyro.reset();
-        dsLcd.println(1, "Starting AUTO");
-        SmartDashboard.putString("Mode", "AUTO RUNNING");
+    private Command autoRoutine() {
+        final Command driveUp = new SequentialGroup(new Command[] {
+            status("Driving up..."),
+            new DriveDistanceCommand(pidDrive, driveProfile),
+            status("Correcting bearing"),
+            new RaceGroup(new Command[] {
+                new TurnCommand(pidDrive, 0.0f) {
+                    protected float getDegrees() {
+                        return -(float) gyro.getAngle();
+                    }
+                },
+                new WaitCommand(RobotConstants.Auto.BEARING_TIMEOUT)
+            })
+        });
+        final Command forkUp = new SequentialGroup(new Command[] {
+            new InstantCommand() {
+                protected void run() {
+                    shooter.setForkAngle(RobotConstants.Positions.SHOOTING);
+                }
+            },
+            new WaitUntilCommand(new Condition() {
+                public boolean isMet() {
+                    return shooter.forkAtTarget(RobotConstants.Auto.FORK_TOLERANCE);
+                }
+            }, RobotConstants.Auto.FORK_TIMEOUT)
+        });
+        final Command hotGoal = new WaitUntilCommand(new Condition() {
+            public boolean isMet() {
+                return visionServer.getLeftStatus() || visionServer.getRightStatus();
+            }
+        }, RobotConstants.Auto.HOTGOAL_DELAY);
+        final Command turnAround = new ParallelGroup(new Command[] {
+            new InstantCommand() {
+                protected void run() {
+                    shooter.closeClaw();
+                    shooter.setForkAngle(RobotConstants.Positions.START);
+                }
+            },
+            new TurnCommand(pidDrive, turnProfile, 0.0f)
+        });
+        return new SequentialGroup(new Command[] {
+            new ParallelGroup(new Command[] { driveUp, forkUp }),
+            status("Waiting for hot goal"),
+            hotGoal,
+            status("Firing"),
+            new InstantCommand() {
+                protected void run() {
+                    shotsBeforeFiring = shooter.getShotCount();
+                    shooter.fire();
+                }
+            },
+            new WaitUntilCommand(new Condition() {
+                public boolean isMet() {
+                    return shooter.getShotCount() > shotsBeforeFiring;
+                }
+            }, RobotConstants.Auto.FIRE_TIMEOUT),
+            status("Turning around"),
+            turnAround
+        });
+    }
+    
+    /**
+     * @param message a status message
+     * @return a Command which prints the message to the DriverStation LCD
+     */
+    private Command status(final String message) {
+        return new InstantCommand() {
+            protected void run() {
+                dsLcd.println(1, message);
+            }
+        };
+    }
 
-        shooter.drawWinch();
-        shooter.setForkAngle(RobotConstants.Positions.START);
-        shooter.closeClaw();
-        pidDrive.reset();
-        pidDrive.start();
-
-        /* NORMAL AUTO ROUTINE */
-        // drive closer to goal
-        dsLcd.println(1, "Driving up...");
-        pidDrive.setTask(pidDrive.DRIVE);
-        pidDrive.setTicksTarget(RobotConstants.Auto.DRIVE_DISTANCE);
-        pidDrive.waitForTarget();
-
-        // try to ensure we are facing forward
-        dsLcd.println(1, "Correcting bearing");
-        pidDrive.setTask(pidDrive.TURN);
-        waitFor(250);
-        pidDrive.turnByDegrees(-(float) gyro.getAngle());
+    /**
+     * The standard autonomous routine: drive up, fire one ball when the goal
+     * is hot, and turn around.
+     * The autonomous Thread runs this while the main robot thread's role is
+     * simply to maintain core robot functionality, eg feeding the Watchdog
+     * and responding to FMS events. The routine's Command graph is built,
+     * the sensors zeroed and the motion profiles generated while disabled,
+     * so that the robot starts moving as soon as the autonomous period begins.
+     */
+    private class OneBallAuto extends AutonomousRoutine {
         
-        dsLcd.println(1, "Assuming firing position");
-        shooter.setForkAngle(RobotConstants.Positions.SHOOTING);
-        waitFor(500);
-
-        if (!visionServer.getLeftStatus() && !visionServer.getRightStatus()) {
-            dsLcd.println(1, "Waiting for hot goal");
-            waitFor(RobotConstants.Auto.HOTGOAL_DELAY);
+        private Command routine;
+        
+        OneBallAuto() {
+            super("One Ball");
         }
+        
+        protected void prepare() {
+            driveProfile.generate(RobotConstants.Auto.DRIVE_DISTANCE);
+            turnProfile.generate(180.0f);
+            routine = autoRoutine();
+        }
+        
+        protected void run() throws Exception {
+            underglowController.set(PURPLE_UNDERGLOW);
+            compressor.stop();
+            visionServer.reset();
+            visionServer.startSamplingCounts();
+            pidDrive.reset();
+            restartEncoders();
+            gyro.reset();
+            dsLcd.println(1, "Starting AUTO");
+            SmartDashboard.putString("Mode", "AUTO RUNNING");
+
+            shooter.drawWinch();
+            shooter.setForkAngle(RobotConstants.Positions.START);
+            shooter.closeClaw();
+            pidDrive.start();
+            autoCommands.start();
 
-        // fire
-        dsLcd.println(1, "Firing");
-        shooter.fire();
-        waitFor(750);
-
-        // reset and turn around
-        dsLcd.println(1, "Turning around");
-        shooter.closeClaw();
-        shooter.setForkAngle(RobotConstants.Positions.START);
-        pidDrive.setTask(pidDrive.TURN);
-        pidDrive.turnByDegrees(180.0f);
-        pidDrive.waitForTarget();
+            runCommand(autoCommands, routine);
 
-        dsLcd.println(1, "AUTO complete");
-        SmartDashboard.putString("Mode", "AUTO COMPLETE");
-        visionServer.stopSamplingCounts();
+            dsLcd.println(1, "AUTO complete");
+            SmartDashboard.putString("Mode", "AUTO COMPLETE");
+            visionServer.stopSamplingCounts();
+        }
     }
 
     /**
      * Put anything here that needs to be performed by the main robot thread
      * during the autonomous period. DO NOT use any Drivetrain, Gamepad,
      * Solenoid, etc. fields in here - these are reserved for use ONLY
-     * within autonomousThreaded()!
+     * within the autonomous routine!
      */    
     public void autonomousPeriodic() {
         if (visionServer.hasClientConnection()) {
@@ -204,7 +378,7 @@ public class Iapetus extends ThreadedAutoRobot {
     /**
      * Runs through once at the start of teleop
      */
-    public void teleopInit() {
+    public void teleopInitThreadsafe() {
         compressor.start();
         visionServer.stopSamplingCounts();
 
@@ -214,12 +388,20 @@ public class Iapetus extends ThreadedAutoRobot {
         } else {
             underglowController.set(RED_UNDERGLOW);
         }
+        // teleop must never block; any iteration in progress just finishes,
+        // and teleopThreadsafe leaves the drive alone until pidDrive has stopped
+        autoCommands.cancel();
         pidDrive.cancel();
         shooter.setForkAngle(RobotConstants.Positions.START);
         dsLcd.clear();
         restartEncoders();
         compressor.start();
         shooter.closeClaw();
+        recording.clear();
+        recordingArmed = SmartDashboard.getBoolean("Record Replay", false);
+        if (recordingArmed) {
+            dsLcd.println(1, "Recording replay");
+        }
     }
 
     /**
@@ -230,9 +412,12 @@ public class Iapetus extends ThreadedAutoRobot {
      * subclasses! Use teleopThreadsafe instead, only!
      */
     public void teleopThreadsafe() {
-        //semi-arcade drive
-        leftDrive.set(gamepad.getLeftY() + gamepad.getRightX());
-        rightDrive.set(gamepad.getLeftY() - gamepad.getRightX());
+        //semi-arcade drive, once the last PIDDrivetrain iteration has finished
+        //writing to the same motors
+        if (pidDrive.getState() == Subsystem.State.STOPPED) {
+            leftDrive.set(gamepad.getLeftY() + gamepad.getRightX());
+            rightDrive.set(gamepad.getLeftY() - gamepad.getRightX());
+        }
 
         //trigger piston mechanism
         if (gamepad.getRightBumper()) {
@@ -304,9 +489,11 @@ public class Iapetus extends ThreadedAutoRobot {
         } else if (gamepad2.getButton(4)) {
             shooter.setForkAngle(RobotConstants.Positions.START);
         }
-
-        dsLcd.println(0, "ShotCount: " + shooter.getShotCount());
-        SmartDashboard.putNumber("Shot Count", shooter.getShotCount());
+        
+        // record driver inputs so they can be replayed as an autonomous routine
+        if (recordingArmed && isOperatorControl()) {
+            recording.record(Utility.getFPGATime(), gamepads);
+        }
     }
 
     /**
@@ -315,7 +502,7 @@ public class Iapetus extends ThreadedAutoRobot {
     public void disabledInit() {
         shooter.resetShotCount();
         compressor.stop();
-        pidDrive.cancel();
+        stopPidDrive();
         leftEncoder.stop();
         rightEncoder.stop();
         leftEncoder.reset();
@@ -329,6 +516,30 @@ public class Iapetus extends ThreadedAutoRobot {
         leftEncoder.reset();
         rightEncoder.reset();
         visionServer.stopSamplingCounts();
+        if (recordingArmed) {
+            saveRecording();
+        }
+    }
+    
+    /**
+     * Save the inputs recorded from the start of teleop, if any, for the
+     * Replay routine, and disarm recording so that the next teleop does not
+     * overwrite them unless "Record Replay" is set again
+     */
+    private void saveRecording() {
+        recordingArmed = false;
+        SmartDashboard.putBoolean("Record Replay", false);
+        if (recording.size() == 0) {
+            return;
+        }
+        try {
+            recording.save(RobotConstants.Replay.FILE);
+            dsLcd.println(1, "Saved " + recording.size() + " frames");
+        } catch (final IOException e) {
+            dsLcd.println(1, "Recording not saved");
+            e.printStackTrace();
+        }
+        recording.clear();
     }
 
     /**
@@ -338,6 +549,8 @@ public class Iapetus extends ThreadedAutoRobot {
         leftDrive.disable();
         rightDrive.disable();
         shooter.disableAll();
+        autoRegistry.select(SmartDashboard.getString("Auto Routine", "One Ball"));
+        prepareAutonomous();
         SmartDashboard.putNumber("POT: ", shooter.getPotVoltage());
         SmartDashboard.putNumber("Gyro: ", shooter.getPotVoltage());
         dsLcd.println(5, "POT: " + shooter.getPotVoltage());
@@ -348,15 +561,167 @@ public class Iapetus extends ThreadedAutoRobot {
      * Called once when the robot enters test mode
      */
     public void testInit() {
+        tuning = false;
+        restartEncoders();
+        SmartDashboard.putString("Autotune Loop", SmartDashboard.getString("Autotune Loop", "fork"));
+        SmartDashboard.putNumber("Autotune Angle",
+                SmartDashboard.getNumber("Autotune Angle", RobotConstants.Positions.SHOOTING));
+        dsLcd.clear();
+        dsLcd.println(1, "START: autotune");
     }
 
     /**
-     * This function is called periodically during test mode
+     * This function is called periodically during test mode.
+     * Pressing START autotunes the loop named by the "Autotune Loop"
+     * SmartDashboard value ("fork" or "drive"), or with "gravity" calibrates
+     * the fork feed forward at each preset angle; SELECT aborts. The fork is
+     * tuned at the preset nearest the "Autotune Angle" SmartDashboard value,
+     * and only that preset's gains in the fork's GainSchedule change.
      */
     public void testPeriodic() {
-        leftDrive.disable();
-        rightDrive.disable();
-        shooter.disableAll();
+        if (!tuning) {
+            leftDrive.disable();
+            rightDrive.disable();
+            shooter.disableAll();
+            if (gamepad.getButton(LogitechDualAction.START)) {
+                startTuning(SmartDashboard.getString("Autotune Loop", "fork"));
+            }
+            return;
+        }
+        final long timeout = calibrating ? RobotConstants.Tuning.FEEDFORWARD_TIMEOUT : RobotConstants.Tuning.TIMEOUT;
+        if (gamepad.getButton(LogitechDualAction.SELECT)
+                || Utils.fpgaElapsed(tuneStartTime) / 1000 > timeout) {
+            forkCalibrator.abort();
+            forkTuner.abort();
+            leftTuner.abort();
+            rightTuner.abort();
+            tuning = false;
+            dsLcd.println(1, "Autotune aborted");
+            return;
+        }
+        if (calibrating) {
+            shooter.setForkManual(forkCalibrator.step());
+            if (forkCalibrator.isDone()) {
+                finishCalibration();
+            }
+        } else if (tuningFork) {
+            shooter.setForkManual(forkTuner.step());
+            if (forkTuner.isDone()) {
+                finishTuning();
+            }
+        } else {
+            leftDrive.set(leftTuner.step());
+            rightDrive.set(rightTuner.step());
+            if (leftTuner.isDone() && rightTuner.isDone()) {
+                finishTuning();
+            }
+        }
+    }
+    
+    /**
+     * Begin relay autotuning of the fork or both drive loops, or fork
+     * feed forward calibration
+     * @param loop "fork", "drive" or "gravity"
+     */
+    private void startTuning(final String loop) {
+        calibrating = loop.equals("gravity");
+        tuningFork = !loop.equals("drive");
+        tuneStartTime = Utility.getFPGATime();
+        tuning = true;
+        if (calibrating) {
+            forkCalibrator.start();
+            dsLcd.println(1, "Calibrating fork");
+            return;
+        }
+        if (tuningFork) {
+            final GainSchedule schedule = shooter.getForkGains();
+            tuningPreset = schedule.nearest((float) SmartDashboard.getNumber("Autotune Angle",
+                    RobotConstants.Positions.SHOOTING));
+            final float setpoint = schedule.getPosition(tuningPreset);
+            forkTuner.start(setpoint, shooter.getForkPid().getFeedForward(setpoint));
+        } else {
+            leftTuner.start(leftDrivePid.getSrc().getValue(), 0.0f);
+            rightTuner.start(rightDrivePid.getSrc().getValue(), 0.0f);
+        }
+        dsLcd.println(1, "Tuning " + (tuningFork ? "fork" : "drive"));
+    }
+    
+    /**
+     * Apply and save the tuned gains
+     */
+    private void finishTuning() {
+        tuning = false;
+        if (tuningFork) {
+            final GainSchedule schedule = shooter.getForkGains();
+            schedule.setGains(tuningPreset, forkTuner.getP(), forkTuner.getI(20), forkTuner.getD(20));
+            shooter.setForkAngle(schedule.getPosition(tuningPreset));
+            gains.put("fork", schedule);
+            reportGains(2, "F" + (int) schedule.getPosition(tuningPreset), schedule.getP(tuningPreset),
+                    schedule.getI(tuningPreset), schedule.getD(tuningPreset));
+        } else {
+            leftDrive.set(0.0);
+            rightDrive.set(0.0);
+            leftTuner.apply(leftDrivePid, 20);
+            rightTuner.apply(rightDrivePid, 20);
+            gains.put("left drive", leftDrivePid);
+            gains.put("right drive", rightDrivePid);
+            reportGains(2, "L", leftDrivePid);
+            reportGains(3, "R", rightDrivePid);
+        }
+        try {
+            gains.save();
+            dsLcd.println(1, "Autotune saved");
+        } catch (final IOException e) {
+            dsLcd.println(1, "Gains not saved");
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Return the fork to the shooting position and save the calibrated
+     * feed forward table with the gains
+     */
+    private void finishCalibration() {
+        tuning = false;
+        shooter.setForkAngle(RobotConstants.Positions.SHOOTING);
+        final FeedForwardTable table = shooter.getForkFeedForward();
+        for (int i = 0; i < table.size(); ++i) {
+            SmartDashboard.putNumber("FF " + (int) table.getPosition(i), table.getOutput(i));
+        }
+        gains.put("fork feed forward", table);
+        try {
+            gains.save();
+            dsLcd.println(1, "Calibration saved");
+        } catch (final IOException e) {
+            dsLcd.println(1, "Calibration not saved");
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Show tuned gains on the DriverStation LCD and SmartDashboard
+     * @param line the LCD line
+     * @param name a short name for the loop
+     * @param pid the loop
+     */
+    private void reportGains(final int line, final String name, final PID pid) {
+        reportGains(line, name, pid.getP(), pid.getI(), pid.getD());
+    }
+    
+    /**
+     * Show tuned gains on the DriverStation LCD and SmartDashboard
+     * @param line the LCD line
+     * @param name a short name for the loop
+     * @param kP the P constant
+     * @param kI the I constant
+     * @param kD the D constant
+     */
+    private void reportGains(final int line, final String name,
+            final float kP, final float kI, final float kD) {
+        dsLcd.println(line, name + " " + kP + " " + kI + " " + kD);
+        SmartDashboard.putNumber(name + " kP", kP);
+        SmartDashboard.putNumber(name + " kI", kI);
+        SmartDashboard.putNumber(name + " kD", kD);
     }
 
 }
@@ -35,6 +35,51 @@ public final class RobotConstants {
         public static final int VISION_PORT = 1180;
         public static final int DRIVE_DISTANCE = 15000;
         public static final int HOTGOAL_DELAY = 5000;
+        public static final int DRIVE_STOP_TIMEOUT = 100;
+        public static final int BEARING_TIMEOUT = 750;
+        public static final int FORK_TIMEOUT = 1000;
+        public static final float FORK_TOLERANCE = 5.0f;
+        public static final int FIRE_TIMEOUT = 750;
+        /* motion profile limits, in encoder ticks and degrees per second (squared, cubed) */
+        public static final float DRIVE_MAX_VELOCITY = 6000.0f;
+        public static final float DRIVE_MAX_ACCELERATION = 12000.0f;
+        public static final float DRIVE_MAX_JERK = 60000.0f;
+        public static final float TURN_MAX_VELOCITY = 270.0f;
+        public static final float TURN_MAX_ACCELERATION = 540.0f;
+        public static final float TURN_MAX_JERK = 0.0f;
+        public static final long PROFILE_PERIOD = 20;
+        /* encoder rate (ticks per second) at full drive output; the encoders count down driving forward */
+        public static final float DRIVE_FULL_RATE = -9000.0f;
+        /* settle detection: ticks within the deadband, and the largest movement
+         * per tick (encoder ticks or degrees) which counts as stopped */
+        public static final int SETTLE_TICKS = 5;
+        public static final float DRIVE_SETTLE_RATE = 20.0f;
+        public static final float TURN_SETTLE_RATE = 0.5f;
+    }
+
+    public static final class Replay {
+        private Replay(){}
+        public static final String FILE = "file:///replay.bin";
+        /* 10 seconds at 50Hz */
+        public static final int CAPACITY = 500;
+    }
+
+    public static final class Tuning {
+        private Tuning(){}
+        public static final String GAINS_FILE = "file:///gains.bin";
+        public static final int CYCLES = 4;
+        public static final int TIMEOUT = 15000;
+        public static final float FORK_RELAY = 0.15f;
+        public static final float FORK_HYSTERESIS = 1.0f;
+        public static final float DRIVE_RELAY = 0.3f;
+        public static final float DRIVE_HYSTERESIS = 50.0f;
+        public static final int FEEDFORWARD_TIMEOUT = 30000;
+        /* holding loop used to calibrate the fork feed forward */
+        public static final float FEEDFORWARD_KP = -0.035f;
+        public static final float FEEDFORWARD_KI = -0.002f;
+        public static final float FEEDFORWARD_TOLERANCE = 1.0f;
+        public static final float FEEDFORWARD_MAX_RATE = 0.2f;
+        public static final int FEEDFORWARD_SETTLE_TICKS = 25;
     }
 
     public static final class Gamepad {
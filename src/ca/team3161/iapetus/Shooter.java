@@ -26,8 +26,13 @@
 package ca.team3161.iapetus;
 
 import ca.team3161.lib.robot.Subsystem;
+import ca.team3161.lib.robot.pid.FeedForwardTable;
+import ca.team3161.lib.robot.pid.GainSchedule;
+import ca.team3161.lib.robot.pid.MedianPidSrc;
 import ca.team3161.lib.robot.pid.PIDulum;
 import ca.team3161.lib.robot.pid.PotentiometerPidSrc;
+import ca.team3161.lib.robot.pid.SampledPidSrc;
+import ca.team3161.lib.robot.pid.SensorSnapshot;
 import ca.team3161.lib.utils.Utils;
 import edu.wpi.first.wpilibj.DoubleSolenoid;
 import edu.wpi.first.wpilibj.DigitalInput;
@@ -56,6 +61,8 @@ public class Shooter extends Subsystem {
     private volatile boolean firing = false;
     private volatile boolean disabled = false;
     private volatile float forkAngle = 45.0f;
+    private volatile boolean manualFork = false;
+    private volatile float manualForkOutput = 0.0f;
 
     private final SpeedController winch = new Victor(7);
     private final DoubleSolenoid trigger = new DoubleSolenoid(1, 2);
@@ -65,14 +72,21 @@ public class Shooter extends Subsystem {
     private final DigitalInput drawbackStopSwitch = new DigitalInput(1);
     private final Potentiometer forkPot = new AnalogPotentiometer(2);
     
-    private final PotentiometerPidSrc pidPot = new PotentiometerPidSrc(forkPot, 3.81f/*minVolt*/, 3.08f/*maxVolt*/, 90, 180);
-    private final PIDulum pidulum = new PIDulum(pidPot, 0.75f,
-            -0.035f/*kP*/, 0.0f/*kI*/, 0.065f/*kD*/, 135.0f/*offsetAngle*/, 0.001f/*torqueConstant*/);
+    private final PotentiometerPidSrc potSrc = new PotentiometerPidSrc(forkPot, 3.81f/*minVolt*/, 3.08f/*maxVolt*/, 90, 180);
+    /* the pot is read and median filtered once per task iteration; everything else uses that reading */
+    private final SensorSnapshot sensors = new SensorSnapshot(20);
+    private final SampledPidSrc pidPot = sensors.register(new MedianPidSrc(potSrc, ForkPid.MEDIAN_WINDOW));
+    private final PIDulum pidulum = ForkPid.configure(new PIDulum(pidPot, ForkPid.DEADBAND,
+            ForkPid.KP, ForkPid.KI, ForkPid.KD, ForkPid.OFFSET_ANGLE, ForkPid.TORQUE_CONSTANT));
+    private final FeedForwardTable forkFeedForward = pidulum.getFeedForwardTable();
+    private final GainSchedule forkGains = pidulum.getGainSchedule();
     private final Timer winchTimer = new Timer();
     private volatile int shotCount = 0;
 
     private Shooter() {
         super(20, true, "SHOOTER");
+        setFixedRate(OverrunPolicy.SKIP);
+        setLeased(true);
     }
     
     public static Shooter getInstance() {
@@ -89,10 +103,10 @@ public class Shooter extends Subsystem {
 
     protected void defineResources() {
         require(winch);
-        require(drawbackStopSwitch);
+        requireShared(drawbackStopSwitch);
         require(pidulum);
-        require(pidPot);
-        require(forkPot);
+        requireShared(pidPot);
+        requireShared(forkPot);
     }
 
     public void disableAll() {
@@ -117,10 +131,11 @@ public class Shooter extends Subsystem {
     }
 
     public boolean forkInfiringPosition() {
-        return (getForkAngle() < RobotConstants.Positions.SHOOTING + 5
-                && getForkAngle() > RobotConstants.Positions.SHOOTING - 5)
-                || (getForkAngle() < RobotConstants.Positions.TRUSS + 5
-                && getForkAngle() > RobotConstants.Positions.TRUSS - 5);
+        final float angle = getForkAngle();
+        return (angle < RobotConstants.Positions.SHOOTING + 5
+                && angle > RobotConstants.Positions.SHOOTING - 5)
+                || (angle < RobotConstants.Positions.TRUSS + 5
+                && angle > RobotConstants.Positions.TRUSS - 5);
     }
 
     public void fire() {
@@ -195,10 +210,43 @@ public class Shooter extends Subsystem {
 
     public void setForkAngle(float angle) {
         disabled = false;
+        manualFork = false;
         this.forkAngle = angle;
         pidulum.clear();
     }
 
+    /**
+     * Drive the fork open-loop rather than holding an angle, eg for tuning.
+     * Cancelled by setForkAngle().
+     * @param speed the PWM for the shoulder motor
+     */
+    public void setForkManual(final float speed) {
+        disabled = false;
+        manualForkOutput = speed;
+        manualFork = true;
+    }
+
+    /**
+     * @return the fork PID loop
+     */
+    public PIDulum getForkPid() {
+        return pidulum;
+    }
+
+    /**
+     * @return the fork PID gains for each preset, looked up by target angle
+     */
+    public GainSchedule getForkGains() {
+        return forkGains;
+    }
+
+    /**
+     * @return the table of outputs holding the fork against gravity
+     */
+    public FeedForwardTable getForkFeedForward() {
+        return forkFeedForward;
+    }
+
     /**
      * @param speed set the PWM for the shoulder motor
      */
@@ -218,8 +266,16 @@ public class Shooter extends Subsystem {
         return forkAngle;
     }
 
+    /**
+     * @param tolerance the allowable error (degrees)
+     * @return true iff the fork is within tolerance of its target angle
+     */
+    public boolean forkAtTarget(final float tolerance) {
+        return Math.abs(getForkAngle() - forkAngle) < tolerance;
+    }
+
     public double getPotVoltage() {
-        return pidPot.getSensor().get();
+        return potSrc.getSensor().get();
     }
 
     public boolean isFiring() {
@@ -227,6 +283,7 @@ public class Shooter extends Subsystem {
     }
 
     public void task() throws Exception {
+        sensors.sample();
         
         if (getStopSwitch()||winchTimer.get() > 1.9) {
             winch.set(0.0);
@@ -238,6 +295,10 @@ public class Shooter extends Subsystem {
         if (disabled) {
             return;
         }
+        if (manualFork) {
+            setFork(manualForkOutput);
+            return;
+        }
         setFork(pidulum.pid(forkAngle));
     }
 }
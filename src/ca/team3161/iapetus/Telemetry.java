@@ -0,0 +1,71 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.iapetus;
+
+import ca.team3161.lib.robot.PriorityClass;
+import ca.team3161.lib.robot.Subsystem;
+import ca.team3161.lib.utils.io.DriverStationLCD;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Periodically reports the shot count and Subsystem loop timings to the
+ * drivers. This is a TELEMETRY class Subsystem, so it is slowed down or
+ * skipped before any CONTROL task (eg the fork PID) is affected.
+ */
+public class Telemetry extends Subsystem {
+    
+    private final Shooter shooter;
+    private final Subsystem drive;
+    private final DriverStationLCD dsLcd = DriverStationLCD.getInstance();
+    private final DriverStation ds = DriverStation.getInstance();
+    
+    /**
+     * @param shooter the Shooter to report on
+     * @param drive the drivetrain Subsystem to report on
+     */
+    public Telemetry(final Shooter shooter, final Subsystem drive) {
+        super(100, true, "TELEMETRY");
+        this.shooter = shooter;
+        this.drive = drive;
+        setPriorityClass(PriorityClass.TELEMETRY);
+    }
+    
+    protected void defineResources() {
+    }
+    
+    protected void task() {
+        SmartDashboard.putNumber("Shot Count", shooter.getShotCount());
+        shooter.getTimings().publish();
+        drive.getTimings().publish();
+        if (ds.isOperatorControl() && ds.isEnabled()) {
+            dsLcd.println(0, "ShotCount: " + shooter.getShotCount());
+        } else if (ds.isDisabled()) {
+            shooter.getTimings().publish(dsLcd, 2);
+            drive.getTimings().publish(dsLcd, 3);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+import ca.team3161.lib.utils.Utils;
+import edu.wpi.first.wpilibj.Utility;
+import java.util.Vector;
+
+/**
+ * The set of AutonomousRoutines a robot can run, and which one is selected.
+ * The selected routine is prepared ahead of time while the robot is disabled
+ * (see ThreadedAutoRobot.prepareAutonomous()), and the time spent preparing
+ * it is recorded so it can be compared with the time taken to start it.
+ * A routine whose preparation fails is not retried until invalidate().
+ */
+public class AutonomousRegistry {
+    
+    private final Vector routines = new Vector();
+    private AutonomousRoutine selected;
+    private boolean prepared = false;
+    private boolean failed = false;
+    private long prepareTime = -1;
+    
+    /**
+     * Add a routine. The first routine added is selected by default.
+     * @param routine the routine to add
+     */
+    public synchronized void add(final AutonomousRoutine routine) {
+        routines.addElement(routine);
+        if (selected == null) {
+            selected = routine;
+            prepared = false;
+            failed = false;
+        }
+    }
+    
+    /**
+     * Select the routine to run in the next autonomous period
+     * @param name the name of a registered routine
+     * @return true iff a routine with that name is registered
+     */
+    public synchronized boolean select(final String name) {
+        for (int i = 0; i < routines.size(); ++i) {
+            final AutonomousRoutine r = (AutonomousRoutine) routines.elementAt(i);
+            if (r.getName().equals(name)) {
+                if (r != selected) {
+                    selected = r;
+                    prepared = false;
+                    failed = false;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @return the selected routine, or null if none are registered
+     */
+    public synchronized AutonomousRoutine getSelected() {
+        return selected;
+    }
+    
+    /**
+     * @return the number of registered routines
+     */
+    public synchronized int size() {
+        return routines.size();
+    }
+    
+    /**
+     * @param index an index less than size()
+     * @return the routine at that index
+     */
+    public synchronized AutonomousRoutine get(final int index) {
+        return (AutonomousRoutine) routines.elementAt(index);
+    }
+    
+    /**
+     * Prepare the selected routine, unless it is already prepared, or its
+     * last preparation failed and it has not been invalidated since
+     * @return true iff the routine was prepared by this call
+     * @throws Exception if the routine could not be prepared. This is thrown
+     * only once for each failure, so callers may report it every time.
+     */
+    synchronized boolean prepare() throws Exception {
+        if (prepared || failed || selected == null) {
+            return false;
+        }
+        final long start = Utility.getFPGATime();
+        try {
+            selected.prepare();
+        } catch (final Exception e) {
+            failed = true;
+            throw e;
+        }
+        prepareTime = Utils.fpgaElapsed(start) / 1000;
+        prepared = true;
+        return true;
+    }
+    
+    /**
+     * Mark the selected routine as needing to be prepared again, even if
+     * its last preparation failed
+     */
+    synchronized void invalidate() {
+        prepared = false;
+        failed = false;
+    }
+    
+    /**
+     * @return true iff the selected routine is ready to run
+     */
+    public synchronized boolean isPrepared() {
+        return prepared;
+    }
+    
+    /**
+     * @return true iff the selected routine failed to prepare, and will not
+     * be retried until it is invalidated or another routine is selected
+     */
+    public synchronized boolean hasFailed() {
+        return failed;
+    }
+    
+    /**
+     * @return the time (milliseconds) taken by the most recent prepare(),
+     * or -1 if no routine has been prepared
+     */
+    public synchronized long getPrepareTime() {
+        return prepareTime;
+    }
+}
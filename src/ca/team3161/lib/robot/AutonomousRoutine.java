@@ -0,0 +1,71 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+/**
+ * A named autonomous routine, registered with an AutonomousRegistry.
+ * Work which does not depend on the match having started (building Command
+ * graphs, generating motion profiles, loading classes) belongs in prepare(),
+ * which runs while the robot is disabled, so that run() can begin moving
+ * the robot as soon as autonomous starts. Resetting sensors and controllers
+ * belongs in run(), since the robot may still be moved while disabled.
+ */
+public abstract class AutonomousRoutine {
+    
+    private final String name;
+    
+    /**
+     * @param name a name by which the routine can be selected
+     */
+    protected AutonomousRoutine(final String name) {
+        this.name = name;
+    }
+    
+    /**
+     * @return the name of this routine
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Get ready to run. Called on the main robot thread while disabled,
+     * once after the routine is selected and again after each time it runs.
+     * Must not actuate anything, or reset sensors or controllers.
+     * @throws Exception
+     */
+    protected abstract void prepare() throws Exception;
+    
+    /**
+     * The one-shot autonomous "script", run in the autonomous Thread
+     * @throws Exception
+     */
+    protected abstract void run() throws Exception;
+    
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,61 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+
+/**
+ * A Trigger which fires when a DigitalInput (eg a limit switch) changes state
+ */
+public class EdgeTrigger implements Trigger {
+    
+    private final DigitalInput input;
+    private final boolean rising, falling;
+    private boolean last;
+    
+    /**
+     * @param input the DigitalInput to watch
+     * @param rising true to fire when the input goes from false to true
+     * @param falling true to fire when the input goes from true to false
+     */
+    public EdgeTrigger(final DigitalInput input, final boolean rising, final boolean falling) {
+        this.input = input;
+        this.rising = rising;
+        this.falling = falling;
+        this.last = input.get();
+    }
+    
+    /**
+     * Inherited from Trigger
+     * @return true iff the input has changed state in a watched direction since the last poll
+     */
+    public boolean poll() {
+        final boolean current = input.get();
+        final boolean fired = (current && !last && rising) || (!current && last && falling);
+        last = current;
+        return fired;
+    }
+}
@@ -0,0 +1,137 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+import ca.team3161.lib.utils.Utils;
+import edu.wpi.first.wpilibj.Utility;
+
+/**
+ * Sheds load from low priority Subsystems when CONTROL tasks are overrunning.
+ * Each CONTROL overrun raises the shed level by one, up to MAX_LEVEL. The level
+ * falls by one for every DECAY_PERIOD that passes without another overrun.
+ * At each level, lower priority classes are slowed down or skipped entirely:
+ * <pre>
+ * level  COSMETIC  TELEMETRY  SENSING
+ *   0     normal    normal    normal
+ *   1     1/4 rate  1/2 rate  normal
+ *   2     skipped   1/4 rate  normal
+ *   3     skipped   skipped   1/2 rate
+ * </pre>
+ * CONTROL tasks are never shed.
+ */
+public final class LoadShedder {
+    
+    /**
+     * The highest shed level
+     */
+    public static final int MAX_LEVEL = 3;
+    
+    /**
+     * How long (microseconds) without a CONTROL overrun before the shed level drops by one
+     */
+    public static final long DECAY_PERIOD = 500000;
+    
+    /* Period multipliers, indexed by [level][class rank]. 0 means skipped. */
+    private static final int[][] MULTIPLIERS = {
+        {1, 1, 1, 1},
+        {4, 2, 1, 1},
+        {0, 4, 1, 1},
+        {0, 0, 2, 1},
+    };
+    
+    private static final LoadShedder INSTANCE = new LoadShedder();
+    
+    private int level;
+    private long lastChange;
+    private int overruns;
+    
+    private LoadShedder() {
+    }
+    
+    /**
+     * @return the shared LoadShedder instance
+     */
+    public static LoadShedder getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Report that a CONTROL task overran its deadline or period
+     */
+    public synchronized void reportOverrun() {
+        decay();
+        ++overruns;
+        if (level < MAX_LEVEL) {
+            ++level;
+        }
+        lastChange = Utility.getFPGATime();
+    }
+    
+    /**
+     * @return the current shed level, from 0 (nothing shed) to MAX_LEVEL
+     */
+    public synchronized int getLevel() {
+        decay();
+        return level;
+    }
+    
+    /**
+     * @return the total number of CONTROL overruns reported
+     */
+    public synchronized int getOverruns() {
+        return overruns;
+    }
+    
+    /**
+     * @param priorityClass the priority class of a Subsystem
+     * @return true iff Subsystems of this class should skip their task at the current level
+     */
+    public boolean shouldSkip(final PriorityClass priorityClass) {
+        return getPeriodMultiplier(priorityClass) == 0;
+    }
+    
+    /**
+     * @param priorityClass the priority class of a Subsystem
+     * @return how many times longer than normal the period of Subsystems of
+     * this class should be at the current level, or 0 if they are skipped
+     */
+    public int getPeriodMultiplier(final PriorityClass priorityClass) {
+        return MULTIPLIERS[getLevel()][priorityClass.getRank()];
+    }
+    
+    /* Must be called while synchronized */
+    private void decay() {
+        if (level == 0) {
+            return;
+        }
+        final long now = Utility.getFPGATime();
+        while (level > 0 && Utils.fpgaDelta(now, lastChange) >= DECAY_PERIOD) {
+            --level;
+            lastChange += DECAY_PERIOD;
+        }
+    }
+    
+}
@@ -0,0 +1,227 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+import ca.team3161.lib.utils.Histogram;
+import ca.team3161.lib.utils.Utils;
+import ca.team3161.lib.utils.io.DriverStationLCD;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Timing instrumentation for a repeating Subsystem. Each iteration records
+ * how long the task took, how long was spent acquiring resources, and the
+ * actual period since the previous iteration started. All durations are in
+ * microseconds. Histograms cover twice the nominal period, in 40 buckets.
+ */
+public final class LoopTimings {
+    
+    private static final int BUCKETS = 40;
+    
+    private final String name;
+    private final long budget;
+    private final Histogram taskTime, acquireTime, period;
+    private volatile int overruns, acquireFailures, shed;
+    private long lastStart = -1;
+    private volatile long startLatency, maxStartLatency;
+    
+    /**
+     * @param name the name to publish these timings under
+     * @param periodMillis the nominal period of the Subsystem (milliseconds)
+     */
+    LoopTimings(final String name, final long periodMillis) {
+        this.name = name;
+        this.budget = Math.max(periodMillis, 1) * 1000;
+        final long width = Math.max(2 * budget / BUCKETS, 1);
+        this.taskTime = new Histogram(BUCKETS, width);
+        this.acquireTime = new Histogram(BUCKETS, width);
+        this.period = new Histogram(BUCKETS, width);
+    }
+    
+    /**
+     * Record one iteration
+     * @param start FPGA time (microseconds) at which the iteration began
+     * @param acquired FPGA time (microseconds) at which resources were acquired
+     * @param end FPGA time (microseconds) at which the task completed
+     */
+    void record(final long start, final long acquired, final long end) {
+        acquireTime.record(Utils.fpgaDelta(acquired, start));
+        taskTime.record(Utils.fpgaDelta(end, acquired));
+        if (Utils.fpgaDelta(end, start) > budget) {
+            ++overruns;
+        }
+        if (lastStart >= 0) {
+            period.record(Utils.fpgaDelta(start, lastStart));
+        }
+        lastStart = start;
+    }
+    
+    /**
+     * Record an iteration which was skipped because its resources could not
+     * all be acquired in time
+     * @param start FPGA time (microseconds) at which the iteration began
+     * @param gaveUp FPGA time (microseconds) at which resource acquisition failed
+     */
+    void recordAcquireFailure(final long start, final long gaveUp) {
+        acquireTime.record(Utils.fpgaDelta(gaveUp, start));
+        ++acquireFailures;
+        if (lastStart >= 0) {
+            period.record(Utils.fpgaDelta(start, lastStart));
+        }
+        lastStart = start;
+    }
+    
+    /**
+     * Record the time from a call to start() until the first iteration began
+     * @param latency the time-to-first-iteration (microseconds)
+     */
+    void recordStartLatency(final long latency) {
+        startLatency = latency;
+        if (latency > maxStartLatency) {
+            maxStartLatency = latency;
+        }
+    }
+    
+    /**
+     * Record an iteration which was skipped by the LoadShedder
+     */
+    void recordShed() {
+        ++shed;
+        lastStart = -1;
+    }
+    
+    /**
+     * Forget the previous iteration, so that the delay before the first
+     * iteration after a restart is not counted as a period
+     */
+    void restart() {
+        lastStart = -1;
+    }
+    
+    /**
+     * Discard all recorded timings
+     */
+    public void clear() {
+        taskTime.clear();
+        acquireTime.clear();
+        period.clear();
+        overruns = 0;
+        acquireFailures = 0;
+        shed = 0;
+    }
+    
+    /**
+     * @return the distribution of time spent running the task itself
+     */
+    public Histogram getTaskTime() {
+        return taskTime;
+    }
+    
+    /**
+     * @return the distribution of time spent acquiring required resources
+     */
+    public Histogram getAcquireTime() {
+        return acquireTime;
+    }
+    
+    /**
+     * @return the distribution of time between the starts of consecutive iterations
+     */
+    public Histogram getPeriod() {
+        return period;
+    }
+    
+    /**
+     * @return the number of iterations whose resource acquisition and task
+     * together took longer than the nominal period
+     */
+    public int getOverruns() {
+        return overruns;
+    }
+    
+    /**
+     * @return the number of iterations skipped because their resources could
+     * not all be acquired in time
+     */
+    public int getAcquireFailures() {
+        return acquireFailures;
+    }
+    
+    /**
+     * @return the time (microseconds) from the most recent start() until its first iteration began
+     */
+    public long getStartLatency() {
+        return startLatency;
+    }
+    
+    /**
+     * @return the longest time (microseconds) from a start() until its first iteration began
+     */
+    public long getMaxStartLatency() {
+        return maxStartLatency;
+    }
+    
+    /**
+     * @return the number of iterations skipped by the LoadShedder
+     */
+    public int getShed() {
+        return shed;
+    }
+    
+    /**
+     * @return the nominal period (microseconds)
+     */
+    public long getBudget() {
+        return budget;
+    }
+    
+    /**
+     * Publish a summary of these timings to the SmartDashboard
+     */
+    public void publish() {
+        SmartDashboard.putNumber(name + " task avg ms", taskTime.getMean() / 1000.0d);
+        SmartDashboard.putNumber(name + " task max ms", taskTime.getMax() / 1000.0d);
+        SmartDashboard.putNumber(name + " acquire max ms", acquireTime.getMax() / 1000.0d);
+        SmartDashboard.putNumber(name + " period avg ms", period.getMean() / 1000.0d);
+        SmartDashboard.putNumber(name + " period p95 ms", period.getPercentile(95.0d) / 1000.0d);
+        SmartDashboard.putNumber(name + " overruns", overruns);
+        SmartDashboard.putNumber(name + " acquire failures", acquireFailures);
+        SmartDashboard.putNumber(name + " shed", shed);
+        SmartDashboard.putNumber(name + " start ms", startLatency / 1000.0d);
+    }
+    
+    /**
+     * Print a one-line summary of these timings to the Driver Station LCD:
+     * name, mean task time (microseconds), 95th percentile period
+     * (milliseconds), and overrun count
+     * @param lcd the Driver Station LCD
+     * @param line the line to print on
+     */
+    public void publish(final DriverStationLCD lcd, final int line) {
+        lcd.println(line, name + " " + (long) taskTime.getMean() + "us "
+                + period.getPercentile(95.0d) / 1000 + "ms " + overruns);
+    }
+    
+}
@@ -25,7 +25,10 @@
 
 package ca.team3161.lib.robot;
 
+import ca.team3161.lib.robot.pid.MotionProfile;
 import ca.team3161.lib.robot.pid.PID;
+import ca.team3161.lib.robot.pid.SensorSnapshot;
+import ca.team3161.lib.utils.Utils;
 import edu.wpi.first.wpilibj.SpeedController;
 
 /**
@@ -35,9 +38,21 @@ public class PIDDrivetrain extends Subsystem {
     
     private final SpeedController leftDrive, rightDrive;
     private final PID leftEncoder, rightEncoder, turningPid /*gyro*/, bearingPid;
+    /* inner velocity loops for cascaded driving */
+    private final PID leftVelocity, rightVelocity;
+    private final float maxVelocity;
+    private final boolean cascaded;
+    private volatile SensorSnapshot sensors;
     private volatile float turningDegreesTarget = 0.0f;
     private volatile int leftTicksTarget = 0, rightTicksTarget = 0;
     private DriveTask t;
+    private volatile boolean targetReached = false;
+    
+    /* The motion profile being followed, if any, and its progress */
+    private volatile MotionProfile profile;
+    private volatile float profileStart;
+    private int profileTick;
+    private float driveFeedForward = 0.0f, turnFeedForward = 0.0f;
     private final Object notifier;
     
     /**
@@ -45,26 +60,25 @@ public class PIDDrivetrain extends Subsystem {
      */
     public DriveTask DRIVE = new DriveTask() {
         public void run() {
+            float velocity = 0.0f;
+            final MotionProfile p = profile;
+            if (p != null) {
+                final int target = -(int) (profileStart + p.getPosition(profileTick));
+                leftTicksTarget = target;
+                rightTicksTarget = target;
+                velocity = -p.getVelocity(profileTick);
+                ++profileTick;
+            }
+            final float feedForward = cascaded ? velocity : driveFeedForward * velocity;
             final double skew = bearingPid.pid(0.0f);
-            leftDrive.set(leftEncoder.pid(leftTicksTarget) + skew);
-            rightDrive.set(rightEncoder.pid(rightTicksTarget) - skew);
-            if (leftEncoder.atTarget() || rightEncoder.atTarget()) {
+            leftDrive.set(drive(leftEncoder, leftVelocity, leftTicksTarget, feedForward) + skew);
+            rightDrive.set(drive(rightEncoder, rightVelocity, rightTicksTarget, feedForward) - skew);
+            if ((leftEncoder.atTarget() || rightEncoder.atTarget()) && profileDone()) {
+                targetReached = true;
                 synchronized (notifier) {
                     notifier.notifyAll();
                 }
             }
-            
-            if (bearingPid.atTarget()) {
-                bearingPid.clear();
-            }
-            
-            if (leftEncoder.atTarget()) {
-                leftEncoder.clear();
-            }
-            
-            if (rightEncoder.atTarget()) {
-                rightEncoder.clear();
-            }
         }
     };
     
@@ -73,20 +87,28 @@ public class PIDDrivetrain extends Subsystem {
      */
     public DriveTask TURN = new DriveTask() {
         public void run() {
-            final double pidVal = turningPid.pid(turningDegreesTarget);
+            float feedForward = 0.0f;
+            final MotionProfile p = profile;
+            if (p != null) {
+                turningDegreesTarget = profileStart + p.getPosition(profileTick);
+                feedForward = turnFeedForward * p.getVelocity(profileTick);
+                ++profileTick;
+            }
+            final double pidVal = turningPid.pid(turningDegreesTarget) + feedForward;
             leftDrive.set(pidVal);
             rightDrive.set(-pidVal);
-            if (turningPid.atTarget()) {
+            if (turningPid.atTarget() && profileDone()) {
+                targetReached = true;
                 synchronized (notifier) {
                     notifier.notifyAll();
                 }
-                turningPid.clear();
             }
         }
     };
     
     /**
-     * Create a new PIDDrivetrain instance
+     * Create a new PIDDrivetrain instance. The PID objects are switched to
+     * timed mode, so their gains are per 20ms iteration.
      * @param leftDrive the left side drivetrain SpeedController
      * @param rightDrive the right side drivetrain SpeedController
      * @param leftEncoder the left side drivetrain Encoder
@@ -95,13 +117,50 @@ public class PIDDrivetrain extends Subsystem {
      */
     public PIDDrivetrain(final SpeedController leftDrive, final SpeedController rightDrive,
             final PID leftEncoder, final PID rightEncoder, final PID turningPid) {
+        this(leftDrive, rightDrive, leftEncoder, rightEncoder, turningPid, null, null, 0.0f);
+    }
+    
+    /**
+     * Create a new PIDDrivetrain instance which drives straight with cascaded
+     * position and velocity loops. Each side's position loop output, limited
+     * to [-1, 1] and scaled by maxVelocity, is the velocity setpoint of that
+     * side's inner loop (eg using an EncoderRatePidSrc). Only the inner loop
+     * drives the SpeedController, so that both sides move at the same speed
+     * whatever the differences between their motors.
+     * @param leftDrive the left side drivetrain SpeedController
+     * @param rightDrive the right side drivetrain SpeedController
+     * @param leftEncoder the left side drivetrain Encoder
+     * @param rightEncoder the right side drivetrain Encoder
+     * @param turningPid an AnglePidSrc (eg Gyro) to maintain a straight heading
+     * @param leftVelocity the left side velocity loop
+     * @param rightVelocity the right side velocity loop
+     * @param maxVelocity the encoder rate at full output. Negative if a
+     * positive output makes the encoders count down.
+     */
+    public PIDDrivetrain(final SpeedController leftDrive, final SpeedController rightDrive,
+            final PID leftEncoder, final PID rightEncoder, final PID turningPid,
+            final PID leftVelocity, final PID rightVelocity, final float maxVelocity) {
         super(20, true, "PID Drivetrain");
+        setFixedRate(OverrunPolicy.SKIP);
+        setLeased(true);
         this.leftDrive = leftDrive;
         this.rightDrive = rightDrive;
         this.leftEncoder = leftEncoder;
         this.rightEncoder = rightEncoder;
         this.turningPid = turningPid;
         this.bearingPid = new PID(turningPid.getSrc(), 0.0f, 0.3f, 0.0f, 0.0f);
+        this.leftVelocity = leftVelocity;
+        this.rightVelocity = rightVelocity;
+        this.maxVelocity = maxVelocity;
+        this.cascaded = leftVelocity != null && rightVelocity != null;
+        leftEncoder.setTimed(20);
+        rightEncoder.setTimed(20);
+        if (cascaded) {
+            leftVelocity.setTimed(20);
+            rightVelocity.setTimed(20);
+        }
+        turningPid.setTimed(20);
+        bearingPid.setTimed(20);
         this.notifier = new Object();
     }
 
@@ -114,6 +173,33 @@ public class PIDDrivetrain extends Subsystem {
         require(leftEncoder);
         require(rightEncoder);
         require(turningPid);
+        if (cascaded) {
+            require(leftVelocity);
+            require(rightVelocity);
+        }
+    }
+    
+    /**
+     * Iterate one side's drive loops. When cascaded, the position loop only
+     * produces the velocity setpoint, and the velocity loop produces the
+     * output: the setpoint divided by maxVelocity, as a feed forward, plus
+     * its own correction, limited to [-1, 1]. Both loops run in the same
+     * iteration, so with a SensorSnapshot they read the same sample.
+     * @param position the side's position loop
+     * @param velocity the side's velocity loop
+     * @param ticksTarget the side's position target
+     * @param feedForward a velocity setpoint (encoder ticks per second) to add
+     * when cascaded, otherwise an output to add, eg from a motion profile
+     * @return the output for the side's SpeedController
+     */
+    private float drive(final PID position, final PID velocity, final int ticksTarget,
+            final float feedForward) {
+        if (!cascaded) {
+            return position.pid(ticksTarget) + feedForward;
+        }
+        final float setpoint = maxVelocity * (float) Utils.normalizePwm(position.pid(ticksTarget))
+                + feedForward;
+        return (float) Utils.normalizePwm(setpoint / maxVelocity + velocity.pid(setpoint));
     }
     
     /**
@@ -123,6 +209,8 @@ public class PIDDrivetrain extends Subsystem {
      * @param degrees how many degrees to turn
      */
     public void turnByDegrees(final float degrees) {
+        targetReached = false;
+        profile = null;
         turningDegreesTarget = degrees;
     }
     
@@ -131,10 +219,60 @@ public class PIDDrivetrain extends Subsystem {
      * @param ticks how many ticks to drive
      */
     public void setTicksTarget(final int ticks) {
+        targetReached = false;
+        profile = null;
         leftTicksTarget = -ticks;
         rightTicksTarget = -ticks;
     }
     
+    /**
+     * Follow a motion profile rather than stepping straight to a target.
+     * Under the DRIVE task the profile is in encoder ticks, starting from
+     * the current ticks target; under TURN it is in degrees, starting from
+     * the current turning target. The profile should already be generated,
+     * eg while disabled. The target is reached only once the profile has ended.
+     * @param profile the profile to follow
+     */
+    public void followProfile(final MotionProfile profile) {
+        followProfile(profile, t == TURN ? turningDegreesTarget : -leftTicksTarget);
+    }
+    
+    /**
+     * Follow a motion profile starting from a given target rather than the
+     * current one, eg to turn to an absolute heading whatever corrections
+     * were made to the turning target beforehand.
+     * @param profile the profile to follow
+     * @param start the target to start from, in encoder ticks under DRIVE
+     * (as passed to setTicksTarget()) or degrees under TURN
+     */
+    public void followProfile(final MotionProfile profile, final float start) {
+        targetReached = false;
+        profileStart = start;
+        profileTick = 0;
+        this.profile = profile;
+    }
+    
+    /**
+     * Add the profile velocity, scaled by these gains, to the outputs while
+     * following a motion profile. When driving with cascaded loops, the
+     * profile velocity is added to the velocity setpoints instead, and the
+     * drive gain is unused.
+     * @param drive output per encoder tick per second under DRIVE
+     * @param turn output per degree per second under TURN
+     */
+    public void setProfileFeedForward(final float drive, final float turn) {
+        this.driveFeedForward = drive;
+        this.turnFeedForward = turn;
+    }
+    
+    /**
+     * @return true iff no motion profile is being followed, or it has ended
+     */
+    private boolean profileDone() {
+        final MotionProfile p = profile;
+        return p == null || profileTick >= p.getLength();
+    }
+    
     /**
      * Change the task from driving straight to turning
      * @param t the task type to switch to
@@ -142,8 +280,11 @@ public class PIDDrivetrain extends Subsystem {
     public void setTask(final DriveTask t) {
         leftEncoder.clear();
         rightEncoder.clear();
+        clearVelocityLoops();
         turningPid.clear();
         bearingPid.clear();
+        targetReached = false;
+        profile = null;
         this.t = t;
     }
     
@@ -154,16 +295,44 @@ public class PIDDrivetrain extends Subsystem {
         leftTicksTarget = 0;
         rightTicksTarget = 0;
         turningDegreesTarget = 0.0f;
+        targetReached = false;
+        profile = null;
         leftEncoder.clear();
         rightEncoder.clear();
+        clearVelocityLoops();
         turningPid.clear();
         bearingPid.clear();
     }
 
+    /**
+     * Reset the state of the velocity loops, if any
+     */
+    private void clearVelocityLoops() {
+        if (cascaded) {
+            leftVelocity.clear();
+            rightVelocity.clear();
+        }
+    }
+
+    /**
+     * Sample a set of sensors at the start of every iteration, before any
+     * loop runs, so that every loop, including both stages of a cascade,
+     * acts on the same instant. The PID objects should use the snapshot's
+     * SampledPidSrcs.
+     * @param sensors the sensors, or null
+     */
+    public void setSensorSnapshot(final SensorSnapshot sensors) {
+        this.sensors = sensors;
+    }
+
     /**
      * Iteratively PID loop.
      */
     protected void task() {
+        final SensorSnapshot snapshot = sensors;
+        if (snapshot != null) {
+            snapshot.sample();
+        }
         t.run();
     }
     
@@ -177,6 +346,14 @@ public class PIDDrivetrain extends Subsystem {
         }
     }
     
+    /**
+     * Non-blocking alternative to waitForTarget(), for use by Commands
+     * @return true iff the current target has been reached since it was last set
+     */
+    public boolean atTarget() {
+        return targetReached;
+    }
+    
     /**
      * An action this PIDDrivetrain may carry out.
      */
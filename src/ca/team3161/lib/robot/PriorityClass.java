@@ -0,0 +1,83 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+/**
+ * The importance of a Subsystem's task. This determines the thread priority
+ * of dedicated Subsystem threads, the order in which the SubsystemScheduler
+ * runs tasks which are due at the same time, the default lease priority, and
+ * which tasks the LoadShedder slows down or skips when control tasks overrun.
+ */
+public final class PriorityClass {
+    
+    /**
+     * Closed-loop control of actuators, eg PID. Never shed.
+     */
+    public static final PriorityClass CONTROL = new PriorityClass("CONTROL", 3, Thread.MAX_PRIORITY);
+    
+    /**
+     * Sampling and processing of sensors, eg vision
+     */
+    public static final PriorityClass SENSING = new PriorityClass("SENSING", 2, Thread.NORM_PRIORITY + 2);
+    
+    /**
+     * Reporting of data to the drivers, eg SmartDashboard values
+     */
+    public static final PriorityClass TELEMETRY = new PriorityClass("TELEMETRY", 1, Thread.NORM_PRIORITY);
+    
+    /**
+     * Anything that can be dropped entirely, eg lights or LCD refreshes
+     */
+    public static final PriorityClass COSMETIC = new PriorityClass("COSMETIC", 0, Thread.MIN_PRIORITY);
+    
+    private final String name;
+    private final int rank;
+    private final int threadPriority;
+    
+    private PriorityClass(final String name, final int rank, final int threadPriority) {
+        this.name = name;
+        this.rank = rank;
+        this.threadPriority = threadPriority;
+    }
+    
+    /**
+     * @return the relative importance of this class. Higher ranks are more important.
+     */
+    public int getRank() {
+        return rank;
+    }
+    
+    /**
+     * @return the Thread priority used for dedicated threads of this class
+     */
+    public int getThreadPriority() {
+        return threadPriority;
+    }
+    
+    public String toString() {
+        return name;
+    }
+}
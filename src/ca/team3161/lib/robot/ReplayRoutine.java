@@ -0,0 +1,108 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+import ca.team3161.lib.utils.Utils;
+import ca.team3161.lib.utils.controls.InputRecording;
+import ca.team3161.lib.utils.controls.LogitechDualAction;
+import ca.team3161.lib.utils.io.DriverStationLCD;
+import edu.wpi.first.wpilibj.Utility;
+import java.io.IOException;
+
+/**
+ * An AutonomousRoutine which plays back a saved InputRecording through the
+ * robot's own teleopThreadsafe(), so that a driver can create an autonomous
+ * routine by driving it in teleop. Each frame is replayed at its recorded
+ * time relative to the start of autonomous, measured on the FPGA clock, so
+ * timing errors do not accumulate. When the recording ends, if autonomous
+ * has not, one neutral frame (no inputs) is replayed to stop the robot.
+ */
+public class ReplayRoutine extends AutonomousRoutine {
+    
+    private final ThreadedAutoRobot robot;
+    private final LogitechDualAction[] gamepads;
+    private final InputRecording recording;
+    private final String url;
+    
+    /**
+     * @param name a name by which the routine can be selected
+     * @param robot the robot whose teleopThreadsafe() will be replayed
+     * @param gamepads the Gamepads to play back, in recorded pad order
+     * @param recording a preallocated recording, with the same number of pads
+     * and channels as the saved file
+     * @param url the saved recording, eg "file:///replay.bin"
+     */
+    public ReplayRoutine(final String name, final ThreadedAutoRobot robot,
+            final LogitechDualAction[] gamepads, final InputRecording recording, final String url) {
+        super(name);
+        this.robot = robot;
+        this.gamepads = gamepads;
+        this.recording = recording;
+        this.url = url;
+    }
+    
+    /**
+     * Load the saved recording. If it cannot be loaded, the routine does
+     * nothing, and the failure is shown on the DriverStation LCD.
+     */
+    protected void prepare() {
+        try {
+            recording.load(url);
+        } catch (final IOException e) {
+            recording.clear();
+            DriverStationLCD.getInstance().println(0, "REPLAY NOT LOADED!");
+        }
+    }
+    
+    /**
+     * Replay the recording
+     * @throws Exception if teleopThreadsafe() throws, or autonomous ends
+     */
+    protected void run() throws Exception {
+        for (int i = 0; i < gamepads.length; ++i) {
+            gamepads[i].setPlayback(recording, i);
+        }
+        try {
+            final long start = Utility.getFPGATime();
+            for (int i = 0; i < recording.size(); ++i) {
+                final long wait = (recording.getTime(i) - Utils.fpgaElapsed(start)) / 1000;
+                if (wait > 0) {
+                    robot.waitFor(wait);
+                }
+                recording.setCursor(i);
+                robot.teleopThreadsafe();
+            }
+        } finally {
+            recording.setCursor(-1);
+            if (robot.isAutonomous()) {
+                robot.teleopThreadsafe();
+            }
+            for (int i = 0; i < gamepads.length; ++i) {
+                gamepads[i].setPlayback(null, 0);
+            }
+        }
+    }
+}
@@ -25,30 +25,390 @@
 
 package ca.team3161.lib.robot;
 
-import edu.wpi.first.wpilibj.communication.Semaphore;
+import ca.team3161.lib.utils.Utils;
+import edu.wpi.first.wpilibj.Utility;
+import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Vector;
 
 /**
  * Tracks robot resources (sensors, motor controllers, etc.) to allow Subsystems
- * to ensure separation of task runs
+ * to ensure separation of task runs.
+ * Every tracked resource is assigned a position in a single global order.
+ * Subsystems acquire their whole set of resources at once, all-or-nothing,
+ * with one bounded wait, so two Subsystems requiring overlapping resources
+ * can never deadlock or hold part of a set while waiting on the rest.
+ * A resource may be held exclusively by one owner, or shared between any
+ * number of owners which only read from it (eg sensors). Shared holders never
+ * block each other, but an exclusive holder blocks everyone else.
+ * Subsystems holding their resources on a lease keep them across iterations.
+ * When a higher priority owner is blocked by a leaseholder, it reserves the
+ * resource and asks the leaseholder to hand it off at its next iteration
+ * boundary. The time each handoff takes is recorded.
  */
 public final class ResourceTracker {
     
     private static final Hashtable resources = new Hashtable();
     
+    private static int nextOrder = 0;
+    
+    private ResourceTracker() {
+    }
+    
     /**
-     * Get the lock associated with a resource
+     * Get the lock associated with a resource, assigning it the next position
+     * in the global order if it has not been tracked before
      * @param resource the resource required
      * @return a unique associated lock
      */
-    public static Semaphore track(Object resource) {
+    public static Resource track(final Object resource) {
+        synchronized (resources) {
+            Resource r = (Resource) resources.get(resource);
+            if (r == null) {
+                r = new Resource(resource, nextOrder++);
+                resources.put(resource, r);
+            }
+            return r;
+        }
+    }
+    
+    /**
+     * @return an Enumeration of every Resource tracked so far
+     */
+    public static Enumeration getTrackedResources() {
+        synchronized (resources) {
+            return resources.elements();
+        }
+    }
+    
+    /**
+     * Sort a set of Resources into the global acquisition order, in place
+     * @param set the Resources to sort
+     * @param shared the access mode of each Resource, kept in step with the set
+     */
+    static void sort(final Resource[] set, final boolean[] shared) {
+        for (int i = 1; i < set.length; ++i) {
+            final Resource r = set[i];
+            final boolean s = shared[i];
+            int j = i - 1;
+            while (j >= 0 && set[j].order > r.order) {
+                set[j + 1] = set[j];
+                shared[j + 1] = shared[j];
+                --j;
+            }
+            set[j + 1] = r;
+            shared[j + 1] = s;
+        }
+    }
+    
+    /**
+     * Acquire every Resource in a set, or none of them.
+     * @param owner the object which will hold the Resources
+     * @param set the Resources to acquire, in global order (see sort())
+     * @param shared for each Resource, true to acquire it shared rather than exclusively
+     * @param priority the priority of the owner. A blocked owner asks lower
+     * priority leaseholders of the Resources it needs to hand them off.
+     * @param timeout the longest time to wait for the whole set (milliseconds).
+     * 0 to try once without waiting.
+     * @param keepReservation true if the owner will try again, so that Resources it
+     * reserved stay reserved if this attempt fails. They are released by the next
+     * successful acquire() or by cancelReservations().
+     * @return true iff every Resource was acquired. If false, none were.
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    static boolean acquire(final Object owner, final Resource[] set, final boolean[] shared,
+            final int priority, final long timeout, final boolean keepReservation)
+            throws InterruptedException {
+        if (set.length == 0) {
+            return true;
+        }
+        synchronized (resources) {
+            final long start = Utility.getFPGATime();
+            boolean contended = false;
+            int busy;
+            boolean acquired = false;
+            try {
+                while ((busy = firstBusy(owner, set, shared, priority)) >= 0) {
+                    if (!contended) {
+                        contended = true;
+                        ++set[busy].contentions;
+                    }
+                    requestHandoff(owner, set[busy], priority);
+                    final long waited = Utils.fpgaElapsed(start);
+                    final long remaining = timeout * 1000 - waited;
+                    if (remaining <= 0) {
+                        set[busy].recordWait(waited);
+                        ++set[busy].timeouts;
+                        return false;
+                    }
+                    resources.wait((remaining + 999) / 1000);
+                }
+                acquired = true;
+            } finally {
+                if (acquired || !keepReservation) {
+                    cancelReservations(owner, set);
+                }
+            }
+            final long waited = Utils.fpgaElapsed(start);
+            for (int i = 0; i < set.length; ++i) {
+                if (shared[i]) {
+                    set[i].readers.addElement(owner);
+                } else {
+                    set[i].owner = owner;
+                }
+                ++set[i].acquisitions;
+                if (contended) {
+                    set[i].recordWait(waited);
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Release every Resource in a set previously acquired by the given owner
+     * @param owner the object holding the Resources
+     * @param set the Resources to release
+     * @param shared the access modes the Resources were acquired with
+     */
+    static void release(final Object owner, final Resource[] set, final boolean[] shared) {
+        if (set.length == 0) {
+            return;
+        }
+        synchronized (resources) {
+            for (int i = 0; i < set.length; ++i) {
+                if (shared[i]) {
+                    set[i].readers.removeElement(owner);
+                } else if (set[i].owner == owner) {
+                    set[i].owner = null;
+                }
+            }
+            resources.notifyAll();
+        }
+    }
+    
+    /**
+     * Release a leased set of Resources in response to a handoff request
+     * @param owner the leaseholder
+     * @param set the Resources to release
+     * @param shared the access modes the Resources were acquired with
+     * @param requested the FPGA time (microseconds) at which the handoff was requested
+     */
+    static void handOff(final Object owner, final Resource[] set, final boolean[] shared,
+            final long requested) {
+        synchronized (resources) {
+            final long latency = Utils.fpgaElapsed(requested);
+            for (int i = 0; i < set.length; ++i) {
+                ++set[i].handoffs;
+                set[i].totalHandoff += latency;
+                if (latency > set[i].maxHandoff) {
+                    set[i].maxHandoff = latency;
+                }
+            }
+            release(owner, set, shared);
+        }
+    }
+    
+    /* Must be called while holding the resources lock */
+    private static int firstBusy(final Object owner, final Resource[] set,
+            final boolean[] shared, final int priority) {
+        for (int i = 0; i < set.length; ++i) {
+            final Resource r = set[i];
+            if (r.owner != null && r.owner != owner) {
+                return i;
+            }
+            if (!shared[i] && (r.readers.size() > 1
+                    || (r.readers.size() == 1 && r.readers.firstElement() != owner))) {
+                return i;
+            }
+            if (r.reservedBy != null && r.reservedBy != owner && r.reservedPriority >= priority) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /* Must be called while holding the resources lock. Reserve the busy
+     * Resource for a higher priority owner, and ask its holders to hand it off. */
+    private static void requestHandoff(final Object owner, final Resource r, final int priority) {
+        if (r.reservedBy == null || priority > r.reservedPriority) {
+            r.reservedBy = owner;
+            r.reservedPriority = priority;
+        }
+        if (r.owner instanceof Subsystem) {
+            ((Subsystem) r.owner).requestHandoff(priority);
+        }
+        for (int i = 0; i < r.readers.size(); ++i) {
+            final Object reader = r.readers.elementAt(i);
+            if (reader instanceof Subsystem) {
+                ((Subsystem) reader).requestHandoff(priority);
+            }
+        }
+    }
+    
+    /**
+     * Drop every reservation held by the given owner, eg when it stops or
+     * no longer requires the reserved Resources
+     * @param owner the object which reserved the Resources
+     */
+    static void cancelReservations(final Object owner) {
         synchronized (resources) {
-            Semaphore s = (Semaphore) resources.get(resource);
-            if (s == null) {
-                s = new Semaphore(new Semaphore.Options());
-                resources.put(resource, s);
+            boolean cancelled = false;
+            final Enumeration e = resources.elements();
+            while (e.hasMoreElements()) {
+                final Resource r = (Resource) e.nextElement();
+                if (r.reservedBy == owner) {
+                    r.reservedBy = null;
+                    cancelled = true;
+                }
+            }
+            if (cancelled) {
+                resources.notifyAll();
+            }
+        }
+    }
+    
+    /* Must be called while holding the resources lock */
+    private static void cancelReservations(final Object owner, final Resource[] set) {
+        boolean cancelled = false;
+        for (int i = 0; i < set.length; ++i) {
+            if (set[i].reservedBy == owner) {
+                set[i].reservedBy = null;
+                cancelled = true;
+            }
+        }
+        if (cancelled) {
+            resources.notifyAll();
+        }
+    }
+    
+    /**
+     * A tracked resource, with its position in the global acquisition order
+     * and statistics about how often it has been contended.
+     * Wait times are in microseconds.
+     */
+    public static final class Resource {
+        
+        private final Object resource;
+        private final int order;
+        private final Vector readers;
+        private Object owner, reservedBy;
+        private int reservedPriority;
+        private int acquisitions, contentions, timeouts, handoffs;
+        private long totalWait, maxWait, totalHandoff, maxHandoff;
+        
+        private Resource(final Object resource, final int order) {
+            this.resource = resource;
+            this.order = order;
+            this.readers = new Vector();
+        }
+        
+        private void recordWait(final long wait) {
+            totalWait += wait;
+            if (wait > maxWait) {
+                maxWait = wait;
+            }
+        }
+        
+        /**
+         * @return the underlying sensor, speed controller, etc.
+         */
+        public Object getResource() {
+            return resource;
+        }
+        
+        /**
+         * @return this Resource's position in the global acquisition order
+         */
+        public int getOrder() {
+            return order;
+        }
+        
+        /**
+         * @return the number of owners currently sharing this Resource
+         */
+        public int getReaders() {
+            synchronized (resources) {
+                return readers.size();
+            }
+        }
+        
+        /**
+         * @return the number of times this Resource has been acquired
+         */
+        public int getAcquisitions() {
+            synchronized (resources) {
+                return acquisitions;
+            }
+        }
+        
+        /**
+         * @return the number of acquisitions which had to wait because this
+         * Resource was held by another owner
+         */
+        public int getContentions() {
+            synchronized (resources) {
+                return contentions;
+            }
+        }
+        
+        /**
+         * @return the number of acquisitions which gave up because this
+         * Resource was still held when the wait timed out
+         */
+        public int getTimeouts() {
+            synchronized (resources) {
+                return timeouts;
             }
-            return s;
+        }
+        
+        /**
+         * @return the total time spent waiting on contended acquisitions involving this Resource
+         */
+        public long getTotalWait() {
+            synchronized (resources) {
+                return totalWait;
+            }
+        }
+        
+        /**
+         * @return the longest single wait on an acquisition involving this Resource
+         */
+        public long getMaxWait() {
+            synchronized (resources) {
+                return maxWait;
+            }
+        }
+        
+        /**
+         * @return the number of times a leaseholder has handed off this Resource
+         */
+        public int getHandoffs() {
+            synchronized (resources) {
+                return handoffs;
+            }
+        }
+        
+        /**
+         * @return the total time between handoff requests and the leaseholder releasing this Resource
+         */
+        public long getTotalHandoffTime() {
+            synchronized (resources) {
+                return totalHandoff;
+            }
+        }
+        
+        /**
+         * @return the longest time between a handoff request and the leaseholder releasing this Resource
+         */
+        public long getMaxHandoffTime() {
+            synchronized (resources) {
+                return maxHandoff;
+            }
+        }
+        
+        public String toString() {
+            return "Resource " + order + " (" + resource + ")";
         }
     }
     
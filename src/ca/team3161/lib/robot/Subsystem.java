@@ -25,9 +25,10 @@
 
 package ca.team3161.lib.robot;
 
-import edu.wpi.first.wpilibj.communication.Semaphore;
-import edu.wpi.first.wpilibj.communication.SemaphoreException;
-import java.util.Enumeration;
+import ca.team3161.lib.utils.Assert;
+import ca.team3161.lib.utils.Utils;
+import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.Utility;
 import java.util.Vector;
 
 /**
@@ -37,11 +38,77 @@ import java.util.Vector;
  */
 public abstract class Subsystem {
     
+    /**
+     * The longest time (milliseconds) a one-shot task waits for its resources
+     */
+    public static final long DEFAULT_ACQUIRE_TIMEOUT = 500;
+    
     /**
      * A list of resources which this Subsystem requires (see ResourceTracker)
      */
     protected final Vector resources;
     
+    /**
+     * The resources which this Subsystem only reads from, and so can share
+     */
+    private final Vector sharedResources;
+    
+    /**
+     * The required resources, sorted into the global acquisition order
+     */
+    private volatile ResourceTracker.Resource[] resourceSet;
+    
+    /**
+     * For each entry of resourceSet, true iff it is required in shared mode
+     */
+    private volatile boolean[] sharedSet;
+    
+    /**
+     * The resources (and their modes) used for the current iteration, so they are
+     * released exactly as they were acquired even if require() is called meanwhile
+     */
+    private ResourceTracker.Resource[] heldSet;
+    private boolean[] heldShared;
+    
+    /**
+     * If defineResources() has been called
+     */
+    private boolean resourcesDefined;
+    
+    /**
+     * If this task keeps its resources across iterations rather than
+     * acquiring and releasing them every iteration
+     */
+    private volatile boolean leased;
+    
+    /**
+     * Priority used to decide which Subsystem gets a contended resource.
+     * A leaseholder hands off its resources to a blocked Subsystem of higher priority.
+     */
+    private volatile int leasePriority;
+    
+    /**
+     * The importance of this task, used for thread priority, scheduling order and load shedding
+     */
+    private volatile PriorityClass priorityClass;
+    
+    /**
+     * If this task currently holds its resources on a lease. Guarded by leaseLock.
+     */
+    private boolean holdingLease;
+    
+    /**
+     * FPGA time (microseconds) at which a higher priority Subsystem asked for
+     * this lease to be handed off, or -1 if no handoff is pending
+     */
+    private volatile long handoffRequested = -1;
+    
+    /**
+     * Held for the duration of each iteration, so that leases are never
+     * released while the task is running
+     */
+    private final Object leaseLock = new Object();
+    
     /**
      * The period length between task repeats (milliseconds)
      */
@@ -63,9 +130,42 @@ public abstract class Subsystem {
     protected boolean started;
     
     /**
-     * The background task for this Subsystem
+     * The pooled worker thread currently running this Subsystem's task, if it
+     * is not run by the SubsystemScheduler. Guarded by wakeLock.
      */
-    private Thread thread;
+    private Thread boundThread;
+    
+    /**
+     * Incremented on each start(), so that a worker still running the task
+     * from before a restart knows to stop. Guarded by wakeLock.
+     */
+    private int generation;
+    
+    /**
+     * Notified to wake a pooled worker sleeping between iterations
+     */
+    private final Object wakeLock = new Object();
+    
+    /**
+     * Where this Subsystem is in its lifecycle. Guarded by stateLock.
+     */
+    private State state = State.STOPPED;
+    
+    /**
+     * If an iteration of the task is in progress. Guarded by stateLock.
+     */
+    private boolean iterating;
+    
+    /**
+     * Notified whenever state changes
+     */
+    private final Object stateLock = new Object();
+    
+    /**
+     * FPGA time (microseconds) of the last start(), until the first iteration
+     * after it has begun, or -1
+     */
+    private volatile long startRequested = -1;
     
     /**
      * The name to assign to the background task
@@ -73,47 +173,458 @@ public abstract class Subsystem {
     protected final String threadName;
     
     /**
+     * If this task runs on its own (pooled) Thread rather than on the shared SubsystemScheduler
+     */
+    protected final boolean dedicatedThread;
+    
+    /**
+     * The FPGA time (microseconds) at which this task should next run
+     */
+    long nextDeadline;
+    
+    /**
+     * How overruns are handled in fixed-rate mode, or null for fixed-delay mode
+     */
+    private volatile OverrunPolicy overrunPolicy;
+    
+    /**
+     * The number of fixed-rate deadlines missed since this task was started
+     */
+    private volatile int missedDeadlines;
+    
+    /**
+     * If this task runs only when signalled (or after maxInterval), rather than periodically
+     */
+    private volatile boolean triggered;
+    
+    /**
+     * In triggered mode, the longest time (milliseconds) between iterations, or 0 for no limit
+     */
+    private volatile long maxInterval;
+    
+    /**
+     * If signal() has been called since the last iteration began
+     */
+    private volatile boolean signalled;
+    
+    /**
+     * Set when a triggered task with no fallback interval is waiting for a
+     * signal, so that passing its NEVER deadline does not run it
+     */
+    private volatile boolean awaitingSignal;
+    
+    /**
+     * A delay (microseconds) long enough to mean "never", yet short enough
+     * that deadlines still compare correctly across an FPGA timer wrap
+     */
+    static final long NEVER = Integer.MAX_VALUE / 2;
+    
+    /**
+     * Timing instrumentation for each iteration of this task
+     */
+    private final LoopTimings timings;
+    
+    /**
+     * Repeating tasks created with this constructor share the
+     * SubsystemScheduler worker thread with all other such Subsystems.
      * @param timeout update period (in milliseconds) between task repeats (if any)
      * @param repeating true iff the task is recurring
      * @param threadName the name for the background thread of this Subsystem
      */
     protected Subsystem(final long timeout, final boolean repeating, final String threadName) {
+        this(timeout, repeating, threadName, false);
+    }
+    
+    /**
+     * @param timeout update period (in milliseconds) between task repeats (if any)
+     * @param repeating true iff the task is recurring
+     * @param threadName the name for the background thread of this Subsystem
+     * @param dedicatedThread true if this task should always get its own Thread,
+     * eg because it blocks for long periods. One-shot tasks always do.
+     */
+    protected Subsystem(final long timeout, final boolean repeating, final String threadName,
+            final boolean dedicatedThread) {
         TASK_TIMEOUT = timeout;
         this.resources = new Vector();
+        this.sharedResources = new Vector();
+        this.resourceSet = new ResourceTracker.Resource[0];
+        this.sharedSet = new boolean[0];
+        this.heldSet = resourceSet;
+        this.heldShared = sharedSet;
         this.repeating = repeating;
         this.cancelled = false;
         this.started = false;
         this.threadName = threadName;
+        this.dedicatedThread = dedicatedThread;
+        this.timings = new LoopTimings(threadName, timeout);
+        this.priorityClass = PriorityClass.CONTROL;
+        this.leasePriority = PriorityClass.CONTROL.getRank();
     }
     
-    private Thread getTaskThread() {
-        return new Thread(new Runnable() {
-            public void run() {
-                if (cancelled) {
+    /**
+     * Run the task on a SubsystemWorkerPool worker: once for one-shot tasks,
+     * or repeatedly until cancelled or restarted.
+     * @param worker the worker's Thread
+     * @param generation the value of generation when the worker was bound
+     */
+    void runBound(final Thread worker, final int generation) {
+        synchronized (wakeLock) {
+            if (!isCurrent(generation)) {
+                return;
+            }
+            boundThread = worker;
+        }
+        try {
+            if (repeating) {
+                nextDeadline = Utility.getFPGATime();
+                while (isCurrent(generation)) {
+                    runIteration();
+                    nextDeadline = computeNextDeadline(Utility.getFPGATime());
+                    sleepUntil(nextDeadline, generation);
+                }
+            } else {
+                runIteration();
+                finishStop(generation);
+            }
+        } finally {
+            synchronized (wakeLock) {
+                if (boundThread == worker) {
+                    boundThread = null;
+                }
+            }
+        }
+    }
+    
+    private boolean isCurrent(final int generation) {
+        synchronized (wakeLock) {
+            return !cancelled && generation == this.generation;
+        }
+    }
+    
+    /* Sleep until the deadline, or until woken by cancel(), start() or signal() */
+    private void sleepUntil(final long deadline, final int generation) {
+        synchronized (wakeLock) {
+            while (isCurrent(generation) && !signalled) {
+                final long delay = Utils.fpgaDelta(deadline, Utility.getFPGATime());
+                if (delay <= 0 && !awaitingSignal) {
+                    return;
+                }
+                try {
+                    wakeLock.wait(awaitingSignal ? 0 : (delay + 999) / 1000);
+                } catch (final InterruptedException e) {
                     return;
                 }
-                if (repeating) {
-                    while (!cancelled) {
-                        try {
-                            acquireResources();
-                            task();
-                            Thread.sleep(TASK_TIMEOUT);
-                        } catch (final Exception e) {
-                        } finally {
-                            releaseResources();
-                        }
-                    }
-                } else {
-                    try {
-                        acquireResources();
-                        task();
-                    } catch (final Exception e) {
-                    } finally {
-                        releaseResources();
-                    }
+            }
+        }
+    }
+    
+    /**
+     * Run the task once, holding the required resources while doing so.
+     * If the resources cannot all be acquired in time, the task is skipped
+     * for this iteration and the failure is counted in the LoopTimings.
+     */
+    void runIteration() {
+        final int gen;
+        synchronized (stateLock) {
+            if (cancelled) {
+                return;
+            }
+            iterating = true;
+            gen = generation;
+            if (state == State.STARTING) {
+                setState(State.RUNNING);
+            }
+        }
+        try {
+            iterate();
+        } finally {
+            synchronized (stateLock) {
+                iterating = false;
+            }
+            if (cancelled) {
+                finishStop(gen);
+            }
+        }
+    }
+    
+    private void iterate() {
+        synchronized (leaseLock) {
+            final long start = Utility.getFPGATime();
+            signalled = false;
+            if (startRequested >= 0) {
+                timings.recordStartLatency(Utils.fpgaDelta(start, startRequested));
+                startRequested = -1;
+            }
+            final boolean shed = repeating && LoadShedder.getInstance().shouldSkip(priorityClass);
+            boolean handedOff = false;
+            if (holdingLease && (handoffRequested >= 0 || !leased || cancelled || shed)) {
+                handedOff = handoffRequested >= 0;
+                releaseLease();
+            }
+            if (shed) {
+                timings.recordShed();
+                return;
+            }
+            boolean acquired = holdingLease;
+            if (handedOff) {
+                // give the Subsystem which asked for the handoff a chance to take the resources
+                acquired = false;
+            } else if (!acquired) {
+                try {
+                    acquired = acquireResources();
+                } catch (final InterruptedException e) {
+                    acquired = false;
                 }
+                holdingLease = acquired && leased && repeating && !cancelled;
+            }
+            final long acquiredTime = Utility.getFPGATime();
+            if (!acquired) {
+                timings.recordAcquireFailure(start, acquiredTime);
+                return;
+            }
+            try {
+                task();
+            } catch (final Exception e) {
+            } finally {
+                if (!holdingLease) {
+                    releaseResources();
+                }
+            }
+            final long end = Utility.getFPGATime();
+            timings.record(start, acquiredTime, end);
+            if (priorityClass == PriorityClass.CONTROL && overrunPolicy == null
+                    && Utils.fpgaDelta(end, start) > TASK_TIMEOUT * 1000) {
+                LoadShedder.getInstance().reportOverrun();
+            }
+        }
+    }
+    
+    /* Must be called while holding leaseLock */
+    private void releaseLease() {
+        final long requested = handoffRequested;
+        if (requested >= 0) {
+            ResourceTracker.handOff(this, heldSet, heldShared, requested);
+        } else {
+            releaseResources();
+        }
+        holdingLease = false;
+        handoffRequested = -1;
+    }
+    
+    /**
+     * Called by the ResourceTracker when a Subsystem of the given priority is
+     * blocked on a resource this Subsystem holds. Leases of lower priority are
+     * handed off at the start of the next iteration, which then skips the task
+     * so that the blocked Subsystem can take the resources.
+     * @param priority the priority of the blocked Subsystem
+     */
+    void requestHandoff(final int priority) {
+        if (leased && priority > leasePriority && handoffRequested < 0) {
+            handoffRequested = Utility.getFPGATime();
+        }
+    }
+    
+    /**
+     * Hold resources across iterations, rather than acquiring and releasing
+     * them every iteration. The lease is kept until this Subsystem is cancelled,
+     * or a Subsystem of higher priority needs one of the resources, in which
+     * case all of them are handed off at the start of the next iteration.
+     * Only repeating tasks hold leases.
+     * @param leased true to hold resources on a lease
+     */
+    protected final void setLeased(final boolean leased) {
+        this.leased = leased;
+    }
+    
+    /**
+     * @param priority the priority of this Subsystem when contending for resources.
+     * Higher values take precedence. The default is the rank of its PriorityClass.
+     */
+    protected final void setLeasePriority(final int priority) {
+        this.leasePriority = priority;
+    }
+    
+    /**
+     * Set the importance of this task. CONTROL tasks report their overruns to
+     * the LoadShedder, which may slow down or skip tasks of lower classes.
+     * This also resets the lease priority to the rank of the class.
+     * The default is CONTROL.
+     * @param priorityClass the importance of this task
+     */
+    protected final void setPriorityClass(final PriorityClass priorityClass) {
+        this.priorityClass = priorityClass;
+        this.leasePriority = priorityClass.getRank();
+        synchronized (wakeLock) {
+            if (boundThread != null) {
+                boundThread.setPriority(priorityClass.getThreadPriority());
+            }
+        }
+    }
+    
+    /**
+     * @return the importance of this task
+     */
+    public PriorityClass getPriorityClass() {
+        return priorityClass;
+    }
+    
+    /**
+     * @return true iff this Subsystem currently holds its resources on a lease
+     */
+    public boolean isHoldingLease() {
+        synchronized (leaseLock) {
+            return holdingLease;
+        }
+    }
+    
+    /**
+     * Find when the task should next run, given that the iteration due at
+     * nextDeadline has just completed. In fixed-delay mode this is simply one
+     * period from now. In fixed-rate mode it is one period after the previous
+     * deadline, with any overrun handled according to the OverrunPolicy.
+     * The period is stretched while the LoadShedder is slowing down this
+     * task's PriorityClass. In triggered mode the next deadline is now if a
+     * signal arrived during the iteration, otherwise after the fallback interval.
+     * Deadlines are FPGA times, so they must only be compared with Utils.fpgaDelta().
+     * @param now the current FPGA time (microseconds)
+     * @return the FPGA time (microseconds) of the next deadline
+     */
+    long computeNextDeadline(final long now) {
+        if (triggered) {
+            awaitingSignal = false;
+            if (signalled) {
+                return now;
             }
-        }, threadName);
+            if (maxInterval > 0) {
+                return now + Math.min(maxInterval * 1000, NEVER);
+            }
+            awaitingSignal = true;
+            return now + NEVER;
+        }
+        awaitingSignal = false;
+        final int multiplier = LoadShedder.getInstance().getPeriodMultiplier(priorityClass);
+        final long period = TASK_TIMEOUT * 1000 * (multiplier > 1 ? multiplier : 1);
+        final OverrunPolicy policy = overrunPolicy;
+        if (policy == null) {
+            return now + period;
+        }
+        long next = nextDeadline + period;
+        if (Utils.fpgaDelta(next, now) > 0) {
+            return next;
+        }
+        if (priorityClass == PriorityClass.CONTROL) {
+            LoadShedder.getInstance().reportOverrun();
+        }
+        if (policy == OverrunPolicy.SKIP) {
+            final long skipped = Utils.fpgaDelta(now, next) / period + 1;
+            missedDeadlines += (int) skipped;
+            next += skipped * period;
+        } else {
+            ++missedDeadlines;
+        }
+        return next;
+    }
+    
+    /**
+     * Run this repeating task at a fixed rate, against absolute deadlines,
+     * rather than sleeping for TASK_TIMEOUT after each iteration. Time spent in
+     * the task itself and waiting on resources then no longer stretches the period.
+     * @param policy what to do when an iteration overruns its deadline
+     */
+    protected final void setFixedRate(final OverrunPolicy policy) {
+        overrunPolicy = policy;
+    }
+    
+    /**
+     * Return to the default mode of sleeping for TASK_TIMEOUT after each iteration
+     */
+    protected final void setFixedDelay() {
+        overrunPolicy = null;
+    }
+    
+    /**
+     * Run this repeating task only when signalled, rather than periodically.
+     * Signals come from calls to signal(), eg when a setpoint changes, or from
+     * Triggers added with addTrigger(). TASK_TIMEOUT is still used as the
+     * time budget for each iteration.
+     * @param maxInterval if no signal arrives within this many milliseconds,
+     * run the task anyway. 0 to wait for a signal indefinitely. Intervals
+     * longer than NEVER (about 17 minutes) are shortened to it.
+     */
+    protected final void setTriggered(final long maxInterval) {
+        this.maxInterval = maxInterval;
+        this.triggered = true;
+    }
+    
+    /**
+     * Return to running this task periodically
+     */
+    protected final void setPeriodic() {
+        this.triggered = false;
+        signal();
+    }
+    
+    /**
+     * Wake a triggered task, so that it runs as soon as possible. If the task
+     * is currently running, it will run again immediately afterward.
+     */
+    public void signal() {
+        if (!repeating) {
+            return;
+        }
+        signalled = true;
+        if (isScheduled()) {
+            SubsystemScheduler.getInstance().wake(this);
+        } else {
+            synchronized (wakeLock) {
+                wakeLock.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * @return true iff this triggered task should not run until it is signalled
+     */
+    boolean isAwaitingSignal() {
+        return awaitingSignal && !signalled;
+    }
+    
+    /**
+     * Signal this Subsystem whenever a Trigger fires. Triggers are polled
+     * every TriggerWatcher.POLL_PERIOD milliseconds.
+     * @param trigger the event which should wake this Subsystem
+     */
+    protected final void addTrigger(final Trigger trigger) {
+        TriggerWatcher.getInstance().add(trigger, this);
+    }
+    
+    /**
+     * Stop signalling this Subsystem when a Trigger fires
+     * @param trigger a Trigger previously given to addTrigger()
+     */
+    protected final void removeTrigger(final Trigger trigger) {
+        TriggerWatcher.getInstance().remove(trigger);
+    }
+    
+    /**
+     * @return the number of fixed-rate deadlines missed since this task was last started
+     */
+    public int getMissedDeadlines() {
+        return missedDeadlines;
+    }
+    
+    /**
+     * @return timing histograms and overrun counts for this task's iterations
+     */
+    public LoopTimings getTimings() {
+        return timings;
+    }
+    
+    /**
+     * @return true iff this task is run by the shared SubsystemScheduler
+     */
+    private boolean isScheduled() {
+        return repeating && !dedicatedThread;
     }
     
     /**
@@ -121,28 +632,82 @@ public abstract class Subsystem {
      * needs exclusive access to during its task
      */
     protected final void require(Object resource) {
-        resources.addElement(ResourceTracker.track(resource));
+        final ResourceTracker.Resource r = ResourceTracker.track(resource);
+        sharedResources.removeElement(r);
+        if (!resources.contains(r)) {
+            resources.addElement(r);
+        }
+        updateResourceSet();
     }
     
-    private void acquireResources() throws SemaphoreException {
-        Enumeration e = resources.elements();
-        while (e.hasMoreElements()) {
-            Semaphore s = (Semaphore) e.nextElement();
-            s.takeMillis(500);
+    /**
+     * Require a resource which this Subsystem only reads from, such as a
+     * sensor. Any number of Subsystems may hold a shared resource at once,
+     * but none may do so while another holds it exclusively (see require()).
+     * If a resource is required both ways, it is held exclusively.
+     * @param resource a sensor that this subsystem reads during its task
+     */
+    protected final void requireShared(Object resource) {
+        Assert.assertFalse("SpeedControllers must be required exclusively",
+                resource instanceof SpeedController);
+        final ResourceTracker.Resource r = ResourceTracker.track(resource);
+        if (resources.contains(r)) {
+            return;
         }
+        resources.addElement(r);
+        sharedResources.addElement(r);
+        updateResourceSet();
     }
     
-    private void releaseResources() {
-        Enumeration e = resources.elements();
-        while (e.hasMoreElements()) {
-            Semaphore s = (Semaphore) e.nextElement();
-            try {
-                s.give();
-            } catch (final SemaphoreException se) {
-            }
+    private void updateResourceSet() {
+        final ResourceTracker.Resource[] set = new ResourceTracker.Resource[resources.size()];
+        final boolean[] shared = new boolean[set.length];
+        resources.copyInto(set);
+        for (int i = 0; i < set.length; ++i) {
+            shared[i] = sharedResources.contains(set[i]);
+        }
+        ResourceTracker.sort(set, shared);
+        synchronized (resources) {
+            resourceSet = set;
+            sharedSet = shared;
         }
     }
     
+    /**
+     * Acquire all required resources, or none, waiting at most one task
+     * period (or DEFAULT_ACQUIRE_TIMEOUT for one-shot tasks). Tasks run by the
+     * SubsystemScheduler never wait, since that would stall every other task
+     * sharing the worker, including a leaseholder which has to run to hand its
+     * resources off. They retry at their next deadline instead.
+     * A repeating task keeps any reservations it made until it acquires the
+     * resources or stops.
+     * @return true iff all required resources were acquired
+     * @throws InterruptedException if interrupted while waiting for resources
+     */
+    private boolean acquireResources() throws InterruptedException {
+        final long timeout;
+        if (isScheduled()) {
+            timeout = 0;
+        } else {
+            timeout = repeating && TASK_TIMEOUT > 0 ? TASK_TIMEOUT : DEFAULT_ACQUIRE_TIMEOUT;
+        }
+        final boolean changed;
+        synchronized (resources) {
+            changed = heldSet != resourceSet;
+            heldSet = resourceSet;
+            heldShared = sharedSet;
+        }
+        if (changed) {
+            ResourceTracker.cancelReservations(this);
+        }
+        return ResourceTracker.acquire(this, heldSet, heldShared, leasePriority, timeout,
+                repeating && !cancelled);
+    }
+    
+    private void releaseResources() {
+        ResourceTracker.release(this, heldSet, heldShared);
+    }
+    
     /**
      * @return if this Subsystem's background task has been canceled
      */
@@ -155,9 +720,92 @@ public abstract class Subsystem {
      * is a recurring task)
      */
     public void cancel() {
-        cancelled = true;
-        if (thread != null) {
-            thread.interrupt();
+        final int gen;
+        synchronized (stateLock) {
+            synchronized (wakeLock) {
+                cancelled = true;
+                gen = generation;
+                if (boundThread != null) {
+                    boundThread.interrupt();
+                }
+                wakeLock.notifyAll();
+            }
+            if (state == State.STOPPED) {
+                return;
+            }
+            setState(State.STOPPING);
+            if (iterating) {
+                // the iteration in progress will finish stopping when it completes
+                return;
+            }
+        }
+        if (isScheduled()) {
+            SubsystemScheduler.getInstance().unschedule(this);
+        }
+        finishStop(gen);
+    }
+    
+    /**
+     * Cancel this Subsystem's task and wait for it to stop
+     * @param timeout the longest time to wait (milliseconds)
+     * @return true iff the task stopped and released its resources in time
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public boolean cancelAndAwait(final long timeout) throws InterruptedException {
+        cancel();
+        return awaitStopped(timeout);
+    }
+    
+    /**
+     * Wait until this Subsystem's task has stopped, ie it has been cancelled
+     * (or was a one-shot task which has completed), is not running, and has
+     * released all of its resources. Do not call this from within the task.
+     * @param timeout the longest time to wait (milliseconds)
+     * @return true iff the task is stopped
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public boolean awaitStopped(final long timeout) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeout;
+        synchronized (stateLock) {
+            while (state != State.STOPPED) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                stateLock.wait(remaining);
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * @return where this Subsystem is in its lifecycle
+     */
+    public State getState() {
+        synchronized (stateLock) {
+            return state;
+        }
+    }
+    
+    /* Must be called while holding stateLock */
+    private void setState(final State state) {
+        this.state = state;
+        stateLock.notifyAll();
+    }
+    
+    /* Release any lease held, then mark the task stopped, unless it has been
+     * restarted since generation gen */
+    private void finishStop(final int gen) {
+        synchronized (leaseLock) {
+            if (holdingLease) {
+                releaseLease();
+            }
+        }
+        ResourceTracker.cancelReservations(this);
+        synchronized (stateLock) {
+            if (gen == generation && state != State.STARTING) {
+                setState(State.STOPPED);
+            }
         }
     }
     
@@ -165,16 +813,39 @@ public abstract class Subsystem {
      * Start (or restart) this Subsystem's background task
      */
     public final void start() {
-        cancelled = false;
-        if (thread != null) {
-            thread.interrupt();
+        synchronized (resources) {
+            if (!resourcesDefined) {
+                resourcesDefined = true;
+                defineResources();
+            }
+        }
+        final int gen;
+        synchronized (stateLock) {
+            synchronized (wakeLock) {
+                if (boundThread != null) {
+                    boundThread.interrupt();
+                }
+                cancelled = false;
+                started = true;
+                gen = ++generation;
+                wakeLock.notifyAll();
+            }
+            setState(State.STARTING);
+        }
+        missedDeadlines = 0;
+        awaitingSignal = false;
+        timings.restart();
+        startRequested = Utility.getFPGATime();
+        if (isScheduled()) {
+            SubsystemScheduler.getInstance().schedule(this);
+        } else {
+            SubsystemWorkerPool.getInstance().bind(this, gen);
         }
-        thread = getTaskThread();
-        thread.start();
     }
     
     /**
-     * Use require() to define a set of required resources
+     * Use require() to define a set of required resources. This is called
+     * once, the first time the Subsystem is started.
      */
     protected abstract void defineResources();
     
@@ -184,4 +855,69 @@ public abstract class Subsystem {
      */
     protected abstract void task() throws Exception;
     
+    /**
+     * The lifecycle states of a Subsystem's task
+     */
+    public static final class State {
+        
+        /**
+         * start() has been called, but the first iteration has not yet begun
+         */
+        public static final State STARTING = new State("STARTING");
+        
+        /**
+         * The task is running, or waiting for its next iteration
+         */
+        public static final State RUNNING = new State("RUNNING");
+        
+        /**
+         * cancel() has been called, but an iteration is still in progress
+         */
+        public static final State STOPPING = new State("STOPPING");
+        
+        /**
+         * The task is not running and holds no resources
+         */
+        public static final State STOPPED = new State("STOPPED");
+        
+        private final String name;
+        
+        private State(final String name) {
+            this.name = name;
+        }
+        
+        public String toString() {
+            return name;
+        }
+    }
+    
+    /**
+     * What a fixed-rate Subsystem does when an iteration finishes after the
+     * deadline of the following one.
+     */
+    public static final class OverrunPolicy {
+        
+        /**
+         * Run the late iterations back-to-back until the schedule is caught up,
+         * so that the total number of iterations is preserved
+         */
+        public static final OverrunPolicy CATCH_UP = new OverrunPolicy("CATCH_UP");
+        
+        /**
+         * Drop the iterations whose deadlines have already passed and resume
+         * at the next deadline still in the future
+         */
+        public static final OverrunPolicy SKIP = new OverrunPolicy("SKIP");
+        
+        private final String name;
+        
+        private OverrunPolicy(final String name) {
+            this.name = name;
+        }
+        
+        public String toString() {
+            return name;
+        }
+    }
+    
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+import ca.team3161.lib.utils.Utils;
+import edu.wpi.first.wpilibj.Utility;
+import java.util.Vector;
+
+/**
+ * Runs the tasks of many repeating Subsystems on a single shared worker thread.
+ * Subsystems are kept in order of their next deadline, and whichever is due
+ * first is run next. When several are overdue at once, the one with the
+ * highest PriorityClass runs first. This avoids creating one Thread (with its own stack and
+ * context switches) per Subsystem.
+ */
+public final class SubsystemScheduler {
+    
+    private static final SubsystemScheduler INSTANCE = new SubsystemScheduler();
+    
+    /**
+     * Scheduled Subsystems, ordered by ascending next deadline
+     */
+    private final Vector queue;
+    
+    /**
+     * The Subsystem currently having its task run by the worker, if any
+     */
+    private Subsystem running;
+    
+    private Thread worker;
+    
+    private SubsystemScheduler() {
+        this.queue = new Vector();
+    }
+    
+    /**
+     * @return the shared SubsystemScheduler instance
+     */
+    public static SubsystemScheduler getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Add a Subsystem to the schedule. Its task will first run as soon as
+     * possible and then repeat, as determined by its fixed-delay or fixed-rate
+     * mode, until it is unscheduled or cancelled. Scheduling an already scheduled Subsystem
+     * restarts its schedule.
+     * @param subsystem the Subsystem to schedule
+     */
+    synchronized void schedule(final Subsystem subsystem) {
+        queue.removeElement(subsystem);
+        subsystem.nextDeadline = Utility.getFPGATime();
+        enqueue(subsystem);
+        if (worker == null) {
+            worker = new Thread(new Worker(), "SUBSYSTEM SCHEDULER");
+            worker.setPriority(PriorityClass.CONTROL.getThreadPriority());
+            worker.start();
+        }
+        notifyAll();
+    }
+    
+    /**
+     * Remove a Subsystem from the schedule. If its task is currently running,
+     * that iteration is allowed to complete, but it will not be run again.
+     * @param subsystem the Subsystem to unschedule
+     */
+    synchronized void unschedule(final Subsystem subsystem) {
+        queue.removeElement(subsystem);
+        notifyAll();
+    }
+    
+    /**
+     * Move a scheduled Subsystem's deadline to now. If it is currently
+     * running, it is rescheduled as normal when it finishes.
+     * @param subsystem the Subsystem to wake
+     */
+    synchronized void wake(final Subsystem subsystem) {
+        if (queue.removeElement(subsystem)) {
+            subsystem.nextDeadline = Utility.getFPGATime();
+            enqueue(subsystem);
+            notifyAll();
+        }
+    }
+    
+    /**
+     * @return the number of Subsystems currently sharing the worker thread
+     */
+    public synchronized int getScheduledCount() {
+        return queue.size() + (running == null ? 0 : 1);
+    }
+    
+    /* Insert a Subsystem into the queue, keeping it sorted by deadline.
+     * Ties keep their existing order so that equal-period Subsystems
+     * take turns. Deadlines are FPGA times, so they are compared with
+     * Utils.fpgaDelta() to stay ordered across a timer wrap. */
+    private void enqueue(final Subsystem subsystem) {
+        int i = queue.size();
+        while (i > 0 && Utils.fpgaDelta(((Subsystem) queue.elementAt(i - 1)).nextDeadline,
+                subsystem.nextDeadline) > 0) {
+            --i;
+        }
+        queue.insertElementAt(subsystem, i);
+    }
+    
+    /* Of all Subsystems whose deadline has passed, find the one with the
+     * highest PriorityClass, preferring the earliest deadline among equals.
+     * Must be called while synchronized, with a non-empty queue. */
+    private Subsystem highestDue() {
+        final long now = Utility.getFPGATime();
+        Subsystem best = (Subsystem) queue.firstElement();
+        for (int i = 1; i < queue.size(); ++i) {
+            final Subsystem s = (Subsystem) queue.elementAt(i);
+            if (Utils.fpgaDelta(s.nextDeadline, now) > 0) {
+                break;
+            }
+            if (s.getPriorityClass().getRank() > best.getPriorityClass().getRank()) {
+                best = s;
+            }
+        }
+        return best;
+    }
+    
+    private final class Worker implements Runnable {
+        public void run() {
+            while (true) {
+                final Subsystem next;
+                synchronized (SubsystemScheduler.this) {
+                    if (queue.isEmpty()) {
+                        try {
+                            SubsystemScheduler.this.wait();
+                        } catch (final InterruptedException e) {
+                        }
+                        continue;
+                    }
+                    final Subsystem head = (Subsystem) queue.firstElement();
+                    final long delay = Utils.fpgaDelta(head.nextDeadline, Utility.getFPGATime());
+                    if (delay > 0) {
+                        try {
+                            SubsystemScheduler.this.wait((delay + 999) / 1000);
+                        } catch (final InterruptedException e) {
+                        }
+                        continue;
+                    }
+                    next = highestDue();
+                    queue.removeElement(next);
+                    if (next.isAwaitingSignal()) {
+                        // its NEVER deadline passed without a signal; wait again
+                        next.nextDeadline = next.computeNextDeadline(Utility.getFPGATime());
+                        enqueue(next);
+                        continue;
+                    }
+                    running = next;
+                }
+                
+                next.runIteration();
+                
+                synchronized (SubsystemScheduler.this) {
+                    running = null;
+                    // a cancel() or restart during the task has already updated the queue
+                    if (!next.getCancelled() && !queue.contains(next)) {
+                        next.nextDeadline = next.computeNextDeadline(Utility.getFPGATime());
+                        enqueue(next);
+                    }
+                }
+            }
+        }
+    }
+    
+}
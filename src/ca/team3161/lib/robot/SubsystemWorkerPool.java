@@ -0,0 +1,167 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+import java.util.Vector;
+
+/**
+ * A pool of pre-started worker threads for Subsystems which do not run on
+ * the SubsystemScheduler (one-shot tasks, and those asking for a dedicated
+ * thread). Starting such a Subsystem binds it to an idle worker, and the
+ * worker returns to the pool once the task finishes or is cancelled, so
+ * restarting a Subsystem does not spawn a new Thread. If every worker is
+ * busy, the pool grows by one.
+ */
+public final class SubsystemWorkerPool {
+    
+    /**
+     * The number of workers started by prestart() if no count is given
+     */
+    public static final int DEFAULT_SIZE = 2;
+    
+    private static final SubsystemWorkerPool INSTANCE = new SubsystemWorkerPool();
+    
+    private final Vector idle;
+    private int workerCount;
+    
+    private SubsystemWorkerPool() {
+        this.idle = new Vector();
+    }
+    
+    /**
+     * @return the shared SubsystemWorkerPool instance
+     */
+    public static SubsystemWorkerPool getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Start DEFAULT_SIZE workers ahead of time, eg in robotInit()
+     */
+    public void prestart() {
+        prestart(DEFAULT_SIZE);
+    }
+    
+    /**
+     * Start workers ahead of time, so that they are already waiting when
+     * Subsystems are started
+     * @param count the minimum number of workers the pool should have
+     */
+    public synchronized void prestart(final int count) {
+        while (workerCount < count) {
+            idle.addElement(newWorker());
+        }
+    }
+    
+    /**
+     * Bind a Subsystem to an idle worker, growing the pool if there are none
+     * @param subsystem the Subsystem whose task should be run
+     * @param generation the start generation of the Subsystem, see Subsystem.runBound()
+     */
+    synchronized void bind(final Subsystem subsystem, final int generation) {
+        final Worker worker;
+        if (idle.isEmpty()) {
+            worker = newWorker();
+        } else {
+            worker = (Worker) idle.lastElement();
+            idle.removeElementAt(idle.size() - 1);
+        }
+        worker.assign(subsystem, generation);
+    }
+    
+    /**
+     * @return the total number of workers, busy or idle
+     */
+    public synchronized int getWorkerCount() {
+        return workerCount;
+    }
+    
+    /**
+     * @return the number of workers waiting to be bound to a Subsystem
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+    
+    /* Must be called while synchronized */
+    private Worker newWorker() {
+        final Worker worker = new Worker();
+        final Thread t = new Thread(worker, "SUBSYSTEM WORKER " + workerCount);
+        ++workerCount;
+        worker.thread = t;
+        t.start();
+        return worker;
+    }
+    
+    private synchronized void returnToPool(final Worker worker) {
+        idle.addElement(worker);
+    }
+    
+    private final class Worker implements Runnable {
+        
+        private Thread thread;
+        private Subsystem subsystem;
+        private int generation;
+        
+        synchronized void assign(final Subsystem subsystem, final int generation) {
+            this.subsystem = subsystem;
+            this.generation = generation;
+            notifyAll();
+        }
+        
+        public void run() {
+            while (true) {
+                final Subsystem s;
+                final int g;
+                synchronized (this) {
+                    while (subsystem == null) {
+                        try {
+                            wait();
+                        } catch (final InterruptedException e) {
+                        }
+                    }
+                    s = subsystem;
+                    g = generation;
+                }
+                
+                thread.setPriority(s.getPriorityClass().getThreadPriority());
+                s.runBound(thread, g);
+                thread.setPriority(Thread.NORM_PRIORITY);
+                
+                synchronized (this) {
+                    subsystem = null;
+                    // clear any interrupt meant for the task we just ran
+                    try {
+                        wait(1);
+                    } catch (final InterruptedException e) {
+                    }
+                }
+                returnToPool(this);
+            }
+        }
+    }
+    
+}
@@ -25,8 +25,13 @@
 
 package ca.team3161.lib.robot;
 
+import ca.team3161.lib.robot.command.Command;
+import ca.team3161.lib.robot.command.CommandScheduler;
+import ca.team3161.lib.utils.Utils;
 import ca.team3161.lib.utils.io.DriverStationLCD;
 import edu.wpi.first.wpilibj.IterativeRobot;
+import edu.wpi.first.wpilibj.Utility;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
  * A subclass of IterativeRobot. Autonomous is run in a new Thread, leaving the main robot thread
@@ -37,40 +42,163 @@ import edu.wpi.first.wpilibj.IterativeRobot;
 public abstract class ThreadedAutoRobot extends IterativeRobot {
     
     private static final int MAX_AUTO_PERIOD_LENGTH = GameConstants.AUTONOMOUS.SECONDS * 1000;
-    private volatile int accumulatedTime = 0;
+    private static final long COMMAND_POLL_PERIOD = 20;
+    private volatile long autoStartTime = 0;
+    private volatile long conditionPollPeriod = 10;
+    private final Object conditionLock = new Object();
+    
+    /* Autonomous thread states. Teleop reads these without blocking. */
+    private static final int AUTO_IDLE = 0, AUTO_RUNNING = 1, AUTO_UNWINDING = 2, AUTO_ABANDONED = 3;
+    private static final long MAX_UNWIND_TIME = 100;
+    private volatile int autoMode = AUTO_IDLE;
     private final Object modeLock = new Object();
-    private Thread autoThread;
+    private volatile Thread autoThread;
+    private volatile long unwindStartTime = 0;
+    
+    /* The prepared autonomous thread, parked until autonomousInit() */
+    private volatile Thread parkedThread;
+    private final Object startLatch = new Object();
+    private boolean startFlag = false;
+    private volatile long autoStartLatency = -1;
+    
+    private volatile long teleopInitTime = 0;
+    private volatile boolean teleopInitialized = false;
+    private volatile boolean teleopStarted = false;
+    private volatile long teleopStartLatency = -1, maxTeleopStartLatency = -1;
+    private volatile int skippedTeleopCycles = 0;
     
     /**
      * The DriverStation virtual LCD display panel instance
      */
     protected final DriverStationLCD dsLcd = DriverStationLCD.getInstance();
     
+    /**
+     * The autonomous routines this robot can run
+     */
+    protected final AutonomousRegistry autoRegistry = new AutonomousRegistry();
+    
     /** DO NOT override this in subclasses!
-     * At the start of the autonomous period, spawn and start a new Thread
-     * using the behaviour described in the concrete subclass implementation's
-     * autonomousThreaded() method.
-     * This new Thread allows us to use Thread.sleep rather than a timer,
+     * At the start of the autonomous period, release the autonomous Thread
+     * prepared by prepareAutonomous(), which runs the behaviour described in
+     * the concrete subclass implementation's autonomousThreaded() method.
+     * If nothing was prepared in advance, it is prepared now, late.
+     * This separate Thread allows us to use Thread.sleep rather than a timer,
      * while also not disrupting normal background functions of the
      * robot such as feeding the Watchdog or responding to FMS events.
-     * modeLock is used to ensure that the robot is never simultaneously
-     * executing both autonomous and teleop routines at the same time.
+     * The autonomous mode state is used to ensure that teleop routines
+     * do not run while the autonomous thread is still unwinding, without
+     * teleop ever blocking on the autonomous thread.
      */
     public final void autonomousInit() {
-        accumulatedTime = 0;
-        autoThread = new Thread(new Runnable() {
-            public void run() {
-                try {
-                    synchronized (modeLock) {
-                        autonomousThreaded();
-                    }
-                } catch (Exception e) {
-                    dsLcd.println(0, "AUTO INTERRUPTED!");
-                    e.printStackTrace();
+        autoStartTime = Utility.getFPGATime();
+        prepareAutonomous();
+        autoRegistry.invalidate();
+        synchronized (modeLock) {
+            autoMode = AUTO_RUNNING;
+            autoThread = parkedThread;
+            parkedThread = null;
+        }
+        synchronized (startLatch) {
+            startFlag = true;
+            startLatch.notifyAll();
+        }
+    }
+    
+    /**
+     * Prepare the selected autonomous routine and start the autonomous Thread,
+     * parked until autonomousInit(). Does nothing if both are already done,
+     * so this may be called every disabledPeriodic(). A routine which fails
+     * to prepare is reported on the LCD once, and not retried until the
+     * next mode change or selection.
+     */
+    protected final void prepareAutonomous() {
+        try {
+            autoRegistry.prepare();
+        } catch (Exception e) {
+            dsLcd.println(0, "AUTO PREPARE FAILED!");
+            e.printStackTrace();
+        }
+        if (parkedThread == null) {
+            parkedThread = new Thread(new Runnable() {
+                public void run() {
+                    runAuto();
+                }
+            }, "AUTO THREAD");
+            parkedThread.start();
+        }
+    }
+    
+    /**
+     * Body of the autonomous Thread: wait for the start latch, then run autonomous
+     */
+    private void runAuto() {
+        try {
+            synchronized (startLatch) {
+                while (!startFlag) {
+                    startLatch.wait();
+                }
+                startFlag = false;
+            }
+            autoStartLatency = Utils.fpgaElapsed(autoStartTime) / 1000;
+            SmartDashboard.putNumber("Auto Prepare Time", autoRegistry.getPrepareTime());
+            SmartDashboard.putNumber("Auto Start Latency", autoStartLatency);
+            autonomousThreaded();
+        } catch (Exception e) {
+            dsLcd.println(0, "AUTO INTERRUPTED!");
+            e.printStackTrace();
+        } finally {
+            synchronized (modeLock) {
+                if (autoThread == Thread.currentThread()) {
+                    autoMode = AUTO_IDLE;
+                }
+                if (parkedThread == Thread.currentThread()) {
+                    parkedThread = null;
                 }
             }
-        }, "AUTO THREAD");
-        autoThread.start();
+        }
+    }
+    
+    /**
+     * @return the time (milliseconds) from the start of autonomousInit() to
+     * the autonomous routine starting to run, or -1 if autonomous has not run
+     */
+    public final long getAutoStartLatency() {
+        return autoStartLatency;
+    }
+    
+    /**
+     * Atomically change the autonomous mode state.
+     * modeLock is only ever held for the duration of this check, never
+     * while running autonomous or teleop code.
+     * @param expect the state the mode must currently be in
+     * @param update the new state
+     * @return true iff the mode was in the expected state and has been changed
+     */
+    private boolean compareAndSetMode(final int expect, final int update) {
+        synchronized (modeLock) {
+            if (autoMode != expect) {
+                return false;
+            }
+            autoMode = update;
+            return true;
+        }
+    }
+    
+    /**
+     * If the autonomous thread is running, interrupt it and mark it unwinding
+     */
+    private void stopAuto() {
+        if (compareAndSetMode(AUTO_RUNNING, AUTO_UNWINDING)) {
+            unwindStartTime = Utility.getFPGATime();
+            autoThread.interrupt();
+        }
+    }
+    
+    /**
+     * @return true iff the autonomous thread has been told to stop but has not yet finished
+     */
+    public final boolean isAutoUnwinding() {
+        return autoMode == AUTO_UNWINDING;
     }
     
     /**
@@ -80,6 +208,31 @@ public abstract class ThreadedAutoRobot extends IterativeRobot {
     */
     public final void teleopContinuous() { }
     
+    /**
+     * @return the time (milliseconds) since the autonomous period began,
+     * including time spent running the autonomous script as well as waiting
+     */
+    public final long getAutoElapsed() {
+        return Utils.fpgaElapsed(autoStartTime) / 1000;
+    }
+    
+    /**
+     * @return the time (milliseconds) remaining in the autonomous period
+     */
+    public final long getAutoRemaining() {
+        return MAX_AUTO_PERIOD_LENGTH - getAutoElapsed();
+    }
+    
+    /**
+     * Throw if the autonomous period is over
+     * @throws InterruptedException if the autonomous period has ended
+     */
+    private void checkAuto() throws InterruptedException {
+        if (!isAutonomous() || getAutoRemaining() <= 0) {
+            throw new InterruptedException("Auto is over!");
+        }
+    }
+    
     /**
      * Add a delay to the autonomous routine.
      * This also ensures that the autonomous routine does not continue
@@ -89,34 +242,172 @@ public abstract class ThreadedAutoRobot extends IterativeRobot {
      * @throws InterruptedException 
      */
     public final void waitFor(long millis) throws InterruptedException {
-        accumulatedTime += millis;
-        if (accumulatedTime > MAX_AUTO_PERIOD_LENGTH) {
+        if (millis > getAutoRemaining()) {
             throw new InterruptedException("Auto is over!");
         }
         Thread.sleep(millis);
-        if (!isAutonomous()) {
-            throw new InterruptedException("Auto is over!");
+        checkAuto();
+    }
+    
+    /**
+     * Set how often waitUntil checks its Condition when not woken by
+     * signalConditions()
+     * @param millis the poll period (milliseconds)
+     */
+    protected final void setConditionPollPeriod(final long millis) {
+        conditionPollPeriod = millis;
+    }
+    
+    /**
+     * Wake any autonomous script blocked in waitUntil so that it checks
+     * its Condition immediately, rather than at the next poll. May be called
+     * from any thread, eg a Subsystem which has just reached its target.
+     */
+    public final void signalConditions() {
+        synchronized (conditionLock) {
+            conditionLock.notifyAll();
+        }
+    }
+    
+    /**
+     * Suspend the autonomous routine until a Condition is met. Returns as soon
+     * as the Condition is seen to hold, rather than after a fixed delay.
+     * @param condition the Condition to wait for
+     * @param timeout the longest time to wait (milliseconds)
+     * @return true iff the Condition was met, false if the timeout expired
+     * @throws InterruptedException if the autonomous period ends first
+     */
+    public final boolean waitUntil(final Condition condition, final long timeout) throws InterruptedException {
+        final long start = Utility.getFPGATime();
+        synchronized (conditionLock) {
+            while (!condition.isMet()) {
+                checkAuto();
+                final long remaining = timeout - Utils.fpgaElapsed(start) / 1000;
+                if (remaining <= 0) {
+                    return false;
+                }
+                conditionLock.wait(Math.min(remaining, conditionPollPeriod));
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Suspend the autonomous routine until a Condition is met, running a
+     * fallback action if it is not met in time
+     * @param condition the Condition to wait for
+     * @param timeout the longest time to wait (milliseconds)
+     * @param orElse run if the timeout expires before the Condition is met
+     * @return true iff the Condition was met
+     * @throws InterruptedException if the autonomous period ends first
+     */
+    public final boolean waitUntilOrElse(final Condition condition, final long timeout,
+            final Runnable orElse) throws InterruptedException {
+        if (waitUntil(condition, timeout)) {
+            return true;
         }
+        orElse.run();
+        return false;
+    }
+    
+    /**
+     * Run a Command to completion on a CommandScheduler, suspending the
+     * autonomous script until it finishes. The Command is cancelled if the
+     * autonomous period ends first.
+     * @param scheduler a started CommandScheduler
+     * @param command the Command to run
+     * @throws InterruptedException if autonomous ends before the Command finishes
+     */
+    public final void runCommand(final CommandScheduler scheduler, final Command command) throws InterruptedException {
+        scheduler.schedule(command);
+        try {
+            while (!scheduler.awaitFinished(command, COMMAND_POLL_PERIOD)) {
+                checkAuto();
+            }
+        } finally {
+            scheduler.cancel(command);
+        }
+    }
+    
+    /**
+     * Do not override this in subclasses!
+     * Stop the autonomous thread if it is still running, and start timing
+     * how long it takes teleop to take control. teleopInitThreadsafe() is
+     * deferred to teleopPeriodic(), once the autonomous thread has finished.
+     */
+    public final void teleopInit() {
+        teleopInitTime = Utility.getFPGATime();
+        teleopInitialized = false;
+        teleopStarted = false;
+        stopAuto();
+        autoRegistry.invalidate();
     }
     
     /**
      * Do not override this in subclasses, or else there may be no guarantee
      * that the autonomous thread and the main robot thread, executing teleop
      * code, will not attempt to run concurrently.
+     * This never blocks. While the autonomous thread is unwinding, teleop
+     * cycles are skipped; if it has not finished within MAX_UNWIND_TIME,
+     * it is abandoned and teleop takes over regardless. The first cycle to
+     * run calls teleopInitThreadsafe() before teleopThreadsafe().
      */
     public final void teleopPeriodic() {
-        if (autoThread != null) {
-            autoThread.interrupt();
+        stopAuto();
+        if (autoMode == AUTO_UNWINDING) {
+            if (Utils.fpgaElapsed(unwindStartTime) / 1000 < MAX_UNWIND_TIME) {
+                ++skippedTeleopCycles;
+                return;
+            }
+            if (compareAndSetMode(AUTO_UNWINDING, AUTO_ABANDONED)) {
+                dsLcd.println(0, "AUTO OVERRIDDEN!");
+            }
         }
-        synchronized (modeLock) {
-            teleopThreadsafe();
+        if (!teleopInitialized) {
+            teleopInitialized = true;
+            teleopInitThreadsafe();
+        }
+        teleopThreadsafe();
+        if (!teleopStarted) {
+            teleopStarted = true;
+            teleopStartLatency = Utils.fpgaElapsed(teleopInitTime) / 1000;
+            if (teleopStartLatency > maxTeleopStartLatency) {
+                maxTeleopStartLatency = teleopStartLatency;
+            }
+            SmartDashboard.putNumber("Teleop Start Latency", teleopStartLatency);
+            SmartDashboard.putNumber("Teleop Skipped Cycles", skippedTeleopCycles);
         }
     }
     
     /**
-     * Called once when the robot enters the teleop mode.
+     * @return the time (milliseconds) from entering teleop to the end of the
+     * first teleopThreadsafe cycle, or -1 if teleop has not yet run
      */
-    public abstract void teleopInit();
+    public final long getTeleopStartLatency() {
+        return teleopStartLatency;
+    }
+    
+    /**
+     * @return the largest teleop start latency (milliseconds) seen since boot
+     */
+    public final long getMaxTeleopStartLatency() {
+        return maxTeleopStartLatency;
+    }
+    
+    /**
+     * @return the number of teleop cycles skipped while waiting for the
+     * autonomous thread to unwind, since boot
+     */
+    public final int getSkippedTeleopCycles() {
+        return skippedTeleopCycles;
+    }
+    
+    /**
+     * Called once when the robot enters the teleop mode, from the first
+     * teleopPeriodic() after the autonomous thread has finished or been
+     * abandoned. Like teleopThreadsafe(), this must not block.
+     */
+    public abstract void teleopInitThreadsafe();
     
     /**
      * Periodically called during robot teleop mode to enable operator control.
@@ -128,8 +419,15 @@ public abstract class ThreadedAutoRobot extends IterativeRobot {
     public abstract void teleopThreadsafe();
 
     /**
-     * The one-shot autonomous "script" to be run in a new Thread
+     * The one-shot autonomous "script" to be run in the autonomous Thread.
+     * By default this runs the routine selected in autoRegistry; subclasses
+     * may instead override it to script autonomous directly.
      * @throws Exception
      */
-    public abstract void autonomousThreaded() throws Exception;
+    public void autonomousThreaded() throws Exception {
+        final AutonomousRoutine routine = autoRegistry.getSelected();
+        if (routine != null) {
+            routine.run();
+        }
+    }
 }
@@ -0,0 +1,67 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+import ca.team3161.lib.robot.pid.PIDSrc;
+
+/**
+ * A Trigger which fires when the value of a PIDSrc crosses a threshold,
+ * in either direction
+ */
+public class ThresholdTrigger implements Trigger {
+    
+    private final PIDSrc source;
+    private volatile float threshold;
+    private boolean above;
+    
+    /**
+     * @param source the sensor to watch
+     * @param threshold the value to fire on crossing
+     */
+    public ThresholdTrigger(final PIDSrc source, final float threshold) {
+        this.source = source;
+        this.threshold = threshold;
+        this.above = source.getValue() >= threshold;
+    }
+    
+    /**
+     * @param threshold the new value to fire on crossing
+     */
+    public void setThreshold(final float threshold) {
+        this.threshold = threshold;
+    }
+    
+    /**
+     * Inherited from Trigger
+     * @return true iff the value has crossed the threshold since the last poll
+     */
+    public boolean poll() {
+        final boolean current = source.getValue() >= threshold;
+        final boolean fired = current != above;
+        above = current;
+        return fired;
+    }
+}
@@ -0,0 +1,97 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot;
+
+import java.util.Vector;
+
+/**
+ * Polls every registered Trigger at a short, fixed rate, and signals the
+ * triggered Subsystem each one belongs to when it fires. This runs as a
+ * SENSING class Subsystem on the SubsystemScheduler, and is started
+ * automatically when the first Trigger is added.
+ */
+public final class TriggerWatcher extends Subsystem {
+    
+    /**
+     * The period (milliseconds) between polls of all Triggers
+     */
+    public static final long POLL_PERIOD = 5;
+    
+    private static final TriggerWatcher INSTANCE = new TriggerWatcher();
+    
+    private final Vector triggers, subsystems;
+    
+    private TriggerWatcher() {
+        super(POLL_PERIOD, true, "TRIGGER WATCHER");
+        this.triggers = new Vector();
+        this.subsystems = new Vector();
+        setPriorityClass(PriorityClass.SENSING);
+        setFixedRate(OverrunPolicy.SKIP);
+    }
+    
+    /**
+     * @return the shared TriggerWatcher instance
+     */
+    public static TriggerWatcher getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Begin polling a Trigger
+     * @param trigger the Trigger to poll
+     * @param subsystem the Subsystem to signal when the Trigger fires
+     */
+    synchronized void add(final Trigger trigger, final Subsystem subsystem) {
+        triggers.addElement(trigger);
+        subsystems.addElement(subsystem);
+        if (!started) {
+            start();
+        }
+    }
+    
+    /**
+     * Stop polling a Trigger
+     * @param trigger the Trigger to stop polling
+     */
+    synchronized void remove(final Trigger trigger) {
+        final int i = triggers.indexOf(trigger);
+        if (i >= 0) {
+            triggers.removeElementAt(i);
+            subsystems.removeElementAt(i);
+        }
+    }
+    
+    protected void defineResources() {
+    }
+    
+    protected synchronized void task() {
+        for (int i = 0; i < triggers.size(); ++i) {
+            if (((Trigger) triggers.elementAt(i)).poll()) {
+                ((Subsystem) subsystems.elementAt(i)).signal();
+            }
+        }
+    }
+}
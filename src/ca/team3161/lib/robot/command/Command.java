@@ -0,0 +1,99 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.command;
+
+/**
+ * A single step of a robot action, such as driving a distance or moving an
+ * arm to a position. Commands are run by a CommandScheduler, which calls
+ * execute() once per tick until isFinished() returns true. Commands can be
+ * combined into SequentialGroups, ParallelGroups, RaceGroups and DeadlineGroups
+ * so that independent mechanisms can move at the same time.
+ * A Command instance may be run again after it has ended.
+ */
+public abstract class Command {
+    
+    private boolean running = false;
+    
+    /**
+     * Called once, on the first tick this Command runs
+     */
+    protected void initialize() {
+    }
+    
+    /**
+     * Called every tick while this Command runs, including the first
+     */
+    protected void execute() {
+    }
+    
+    /**
+     * Checked every tick, after execute()
+     * @return true iff this Command has completed
+     */
+    protected abstract boolean isFinished();
+    
+    /**
+     * Called once when this Command stops running
+     * @param interrupted true iff this Command was stopped before it finished
+     */
+    protected void end(final boolean interrupted) {
+    }
+    
+    /**
+     * Run one tick of this Command, initializing it first if needed
+     * @return true iff the Command finished on this tick
+     */
+    final boolean tick() {
+        if (!running) {
+            running = true;
+            initialize();
+        }
+        execute();
+        if (isFinished()) {
+            running = false;
+            end(false);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Stop this Command before it has finished. Has no effect if it is not running.
+     */
+    final void interrupt() {
+        if (running) {
+            running = false;
+            end(true);
+        }
+    }
+    
+    /**
+     * @return true iff this Command has been initialized and has not yet ended
+     */
+    public final boolean isRunning() {
+        return running;
+    }
+}
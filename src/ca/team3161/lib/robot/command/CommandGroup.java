@@ -0,0 +1,87 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.command;
+
+/**
+ * A Command composed of other Commands. The concrete group decides how its
+ * members are run and when the group as a whole is finished.
+ */
+public abstract class CommandGroup extends Command {
+    
+    /**
+     * The member Commands of this group
+     */
+    protected final Command[] commands;
+    
+    /**
+     * For each member, true iff it has finished during the current run of this group
+     */
+    protected final boolean[] finished;
+    
+    /**
+     * @param commands the members of this group
+     */
+    protected CommandGroup(final Command[] commands) {
+        this.commands = commands;
+        this.finished = new boolean[commands.length];
+    }
+    
+    /**
+     * Mark every member as not yet finished
+     */
+    protected void initialize() {
+        for (int i = 0; i < finished.length; ++i) {
+            finished[i] = false;
+        }
+    }
+    
+    /**
+     * Interrupt every member still running
+     * @param interrupted inherited from Command
+     */
+    protected void end(final boolean interrupted) {
+        for (int i = 0; i < commands.length; ++i) {
+            commands[i].interrupt();
+        }
+    }
+    
+    /**
+     * Tick every member which has not yet finished
+     * @return the number of members which have finished
+     */
+    protected int tickAll() {
+        int done = 0;
+        for (int i = 0; i < commands.length; ++i) {
+            if (!finished[i]) {
+                finished[i] = commands[i].tick();
+            }
+            if (finished[i]) {
+                ++done;
+            }
+        }
+        return done;
+    }
+}
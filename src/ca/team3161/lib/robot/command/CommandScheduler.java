@@ -0,0 +1,164 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.command;
+
+import ca.team3161.lib.robot.Subsystem;
+import java.util.Vector;
+
+/**
+ * A Subsystem which runs Commands. Every tick, each scheduled Command is
+ * ticked once, in the order they were scheduled, so that all running
+ * Commands (and all members of running groups) advance together.
+ */
+public class CommandScheduler extends Subsystem {
+    
+    private final Vector commands;
+    private final Object finishedLock;
+    
+    /**
+     * Create a CommandScheduler ticking every 20 milliseconds
+     */
+    public CommandScheduler() {
+        this(20);
+    }
+    
+    /**
+     * @param period the time (milliseconds) between ticks
+     */
+    public CommandScheduler(final long period) {
+        super(period, true, "COMMAND SCHEDULER");
+        this.commands = new Vector();
+        this.finishedLock = new Object();
+        setFixedRate(OverrunPolicy.SKIP);
+    }
+    
+    protected void defineResources() {
+    }
+    
+    /**
+     * Begin running a Command on the next tick. Scheduling a Command which is
+     * already scheduled has no effect.
+     * @param command the Command to run
+     */
+    public void schedule(final Command command) {
+        synchronized (commands) {
+            if (!commands.contains(command)) {
+                commands.addElement(command);
+            }
+        }
+    }
+    
+    /**
+     * Stop running a Command, interrupting it if it had started
+     * @param command the Command to cancel
+     */
+    public void cancel(final Command command) {
+        synchronized (commands) {
+            if (commands.removeElement(command)) {
+                command.interrupt();
+            }
+        }
+        synchronized (finishedLock) {
+            finishedLock.notifyAll();
+        }
+    }
+    
+    /**
+     * Stop running every scheduled Command
+     */
+    public void cancelAll() {
+        synchronized (commands) {
+            for (int i = 0; i < commands.size(); ++i) {
+                ((Command) commands.elementAt(i)).interrupt();
+            }
+            commands.removeAllElements();
+        }
+        synchronized (finishedLock) {
+            finishedLock.notifyAll();
+        }
+    }
+    
+    /**
+     * @param command a Command
+     * @return true iff the Command is scheduled and has not yet finished
+     */
+    public boolean isScheduled(final Command command) {
+        synchronized (commands) {
+            return commands.contains(command);
+        }
+    }
+    
+    /**
+     * Suspend the calling thread until a Command is no longer scheduled
+     * @param command the Command to wait for
+     * @param timeout the longest time to wait (milliseconds)
+     * @return true iff the Command is no longer scheduled
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public boolean awaitFinished(final Command command, final long timeout) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeout;
+        synchronized (finishedLock) {
+            while (isScheduled(command)) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                finishedLock.wait(remaining);
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Tick every scheduled Command once, removing those which finish
+     */
+    protected void task() {
+        boolean anyFinished = false;
+        synchronized (commands) {
+            for (int i = 0; i < commands.size(); ++i) {
+                final Command c = (Command) commands.elementAt(i);
+                if (c.tick()) {
+                    commands.removeElementAt(i);
+                    --i;
+                    anyFinished = true;
+                }
+            }
+        }
+        if (anyFinished) {
+            synchronized (finishedLock) {
+                finishedLock.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Stop running every scheduled Command, then cancel this Subsystem
+     */
+    public void cancel() {
+        super.cancel();
+        cancelAll();
+    }
+}
@@ -0,0 +1,75 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.command;
+
+import ca.team3161.lib.robot.PIDDrivetrain;
+import ca.team3161.lib.robot.pid.MotionProfile;
+
+/**
+ * Drive a PIDDrivetrain straight forward (or backward) a number of encoder ticks,
+ * either stepping straight to the target or following a MotionProfile.
+ * The PIDDrivetrain must already be started.
+ */
+public class DriveDistanceCommand extends Command {
+    
+    private final PIDDrivetrain drivetrain;
+    private final int ticks;
+    private final MotionProfile profile;
+    
+    /**
+     * @param drivetrain the PIDDrivetrain to drive
+     * @param ticks how many ticks to drive
+     */
+    public DriveDistanceCommand(final PIDDrivetrain drivetrain, final int ticks) {
+        this.drivetrain = drivetrain;
+        this.ticks = ticks;
+        this.profile = null;
+    }
+    
+    /**
+     * @param drivetrain the PIDDrivetrain to drive
+     * @param profile the generated profile to follow, in encoder ticks, from
+     * the drivetrain's current ticks target
+     */
+    public DriveDistanceCommand(final PIDDrivetrain drivetrain, final MotionProfile profile) {
+        this.drivetrain = drivetrain;
+        this.ticks = 0;
+        this.profile = profile;
+    }
+    
+    protected void initialize() {
+        drivetrain.setTask(drivetrain.DRIVE);
+        if (profile == null) {
+            drivetrain.setTicksTarget(ticks);
+        } else {
+            drivetrain.followProfile(profile);
+        }
+    }
+    
+    protected boolean isFinished() {
+        return drivetrain.atTarget();
+    }
+}
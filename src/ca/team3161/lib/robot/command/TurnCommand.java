@@ -0,0 +1,108 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.command;
+
+import ca.team3161.lib.robot.PIDDrivetrain;
+import ca.team3161.lib.robot.pid.MotionProfile;
+
+/**
+ * Turn a PIDDrivetrain in place. The PIDDrivetrain must already be started.
+ * Subclasses may override getDegrees() to decide the angle when the Command
+ * starts rather than when it is constructed, eg to correct a measured heading.
+ */
+public class TurnCommand extends Command {
+    
+    private final PIDDrivetrain drivetrain;
+    private final float degrees;
+    private final MotionProfile profile;
+    private final boolean absolute;
+    private final float start;
+    
+    /**
+     * @param drivetrain the PIDDrivetrain to turn
+     * @param degrees how many degrees to turn
+     */
+    public TurnCommand(final PIDDrivetrain drivetrain, final float degrees) {
+        this.drivetrain = drivetrain;
+        this.degrees = degrees;
+        this.profile = null;
+        this.absolute = false;
+        this.start = 0.0f;
+    }
+    
+    /**
+     * Turn by following a MotionProfile instead. getDegrees() is not used.
+     * @param drivetrain the PIDDrivetrain to turn
+     * @param profile the generated profile to follow, in degrees, from the
+     * drivetrain's current turning target
+     */
+    public TurnCommand(final PIDDrivetrain drivetrain, final MotionProfile profile) {
+        this.drivetrain = drivetrain;
+        this.degrees = 0.0f;
+        this.profile = profile;
+        this.absolute = false;
+        this.start = 0.0f;
+    }
+    
+    /**
+     * Turn by following a MotionProfile from an absolute heading, so that
+     * the final heading does not depend on earlier corrections to the
+     * drivetrain's turning target. getDegrees() is not used.
+     * @param drivetrain the PIDDrivetrain to turn
+     * @param profile the generated profile to follow, in degrees
+     * @param start the heading, in degrees, the profile starts from
+     */
+    public TurnCommand(final PIDDrivetrain drivetrain, final MotionProfile profile, final float start) {
+        this.drivetrain = drivetrain;
+        this.degrees = 0.0f;
+        this.profile = profile;
+        this.absolute = true;
+        this.start = start;
+    }
+    
+    /**
+     * Called when the Command starts
+     * @return how many degrees to turn
+     */
+    protected float getDegrees() {
+        return degrees;
+    }
+    
+    protected void initialize() {
+        drivetrain.setTask(drivetrain.TURN);
+        if (profile == null) {
+            drivetrain.turnByDegrees(getDegrees());
+        } else if (absolute) {
+            drivetrain.followProfile(profile, start);
+        } else {
+            drivetrain.followProfile(profile);
+        }
+    }
+    
+    protected boolean isFinished() {
+        return drivetrain.atTarget();
+    }
+}
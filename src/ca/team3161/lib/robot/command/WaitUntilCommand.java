@@ -0,0 +1,68 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.command;
+
+import ca.team3161.lib.robot.Condition;
+import ca.team3161.lib.utils.Utils;
+import edu.wpi.first.wpilibj.Utility;
+
+/**
+ * A Command which finishes as soon as a Condition is met, or after a timeout
+ */
+public class WaitUntilCommand extends Command {
+    
+    private final Condition condition;
+    private final long timeout;
+    private long start;
+    private boolean met;
+    
+    /**
+     * @param condition the Condition to wait for
+     * @param timeout the longest time to wait (milliseconds)
+     */
+    public WaitUntilCommand(final Condition condition, final long timeout) {
+        this.condition = condition;
+        this.timeout = timeout * 1000;
+    }
+    
+    protected void initialize() {
+        start = Utility.getFPGATime();
+        met = false;
+    }
+    
+    protected boolean isFinished() {
+        met = condition.isMet();
+        return met || Utils.fpgaElapsed(start) >= timeout;
+    }
+    
+    /**
+     * @return true iff the Condition was met when this Command last finished,
+     * false if it timed out
+     */
+    public boolean wasMet() {
+        return met;
+    }
+}
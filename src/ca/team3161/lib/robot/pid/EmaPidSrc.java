@@ -0,0 +1,69 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+/**
+ * An exponential moving average (single-pole low-pass) filter.
+ */
+public class EmaPidSrc extends FilteredPidSrc {
+    
+    private final float alpha;
+    private float value;
+    private boolean primed = false;
+    
+    /**
+     * @param source the PIDSrc to filter
+     * @param alpha the weight, in (0, 1], given to each new sample. 1 disables filtering
+     */
+    public EmaPidSrc(final PIDSrc source, final float alpha) {
+        super(source);
+        if (alpha <= 0.0f || alpha > 1.0f) {
+            throw new IllegalArgumentException("Alpha must be in (0, 1]");
+        }
+        this.alpha = alpha;
+    }
+    
+    protected synchronized float filter(final float sample) {
+        if (!primed) {
+            value = sample;
+            primed = true;
+        } else {
+            value += alpha * (sample - value);
+        }
+        return value;
+    }
+    
+    /**
+     * @return (1 - alpha) / alpha
+     */
+    public float getLatency() {
+        return (1.0f - alpha) / alpha;
+    }
+    
+    public synchronized void reset() {
+        primed = false;
+    }
+}
@@ -0,0 +1,150 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+/**
+ * Fills a FeedForwardTable by holding a mechanism still at each of its
+ * positions in turn and recording the output needed to do so.
+ * The mechanism is held by a PI loop; once it has stayed within tolerance
+ * of the position, and nearly still, for long enough, the output is
+ * recorded and the next position is started.
+ * Call step() once per loop iteration and send its result to the actuator
+ * until isDone() returns true.
+ */
+public class FeedForwardCalibrator {
+    
+    private final PIDSrc source;
+    private final FeedForwardTable table;
+    private final float kP, kI;
+    private final float tolerance, maxRate;
+    private final int settleTicks;
+    
+    private int index, settled;
+    private float integral, lastValue;
+    private boolean running, done;
+    
+    /**
+     * @param source the PIDSrc of the mechanism
+     * @param table the table to fill. Its existing outputs are used as the
+     * starting guess at each position.
+     * @param kP P constant of the holding loop
+     * @param kI I constant of the holding loop, per iteration
+     * @param tolerance how close (in sensor units) to the position the mechanism must be
+     * @param maxRate how far (in sensor units) the mechanism may move per iteration while settled
+     * @param settleTicks how many consecutive iterations the mechanism must be settled
+     */
+    public FeedForwardCalibrator(final PIDSrc source, final FeedForwardTable table,
+            final float kP, final float kI, final float tolerance, final float maxRate,
+            final int settleTicks) {
+        this.source = source;
+        this.table = table;
+        this.kP = kP;
+        this.kI = kI;
+        this.tolerance = tolerance;
+        this.maxRate = maxRate;
+        this.settleTicks = settleTicks;
+    }
+    
+    /**
+     * Begin calibrating from the first position in the table
+     */
+    public void start() {
+        index = 0;
+        done = false;
+        running = table.size() > 0;
+        begin();
+    }
+    
+    /**
+     * Stop calibrating. Positions already recorded are kept.
+     */
+    public void abort() {
+        running = false;
+    }
+    
+    /**
+     * Iterate the holding loop
+     * @return the output to send to the actuator
+     */
+    public float step() {
+        if (!running) {
+            return 0.0f;
+        }
+        final float value = source.getValue();
+        final float error = table.getPosition(index) - value;
+        final float output = integral + kP * error;
+        if (Math.abs(error) < tolerance && Math.abs(value - lastValue) < maxRate) {
+            ++settled;
+        } else {
+            settled = 0;
+            integral += kI * error;
+        }
+        lastValue = value;
+        if (settled >= settleTicks) {
+            table.setOutput(index, output);
+            if (++index >= table.size()) {
+                running = false;
+                done = true;
+                return output;
+            }
+            begin();
+        }
+        return output;
+    }
+    
+    /**
+     * Start holding the current position
+     */
+    private void begin() {
+        if (!running) {
+            return;
+        }
+        integral = table.getOutput(index);
+        lastValue = source.getValue();
+        settled = 0;
+    }
+    
+    /**
+     * @return the index of the position being calibrated
+     */
+    public int getIndex() {
+        return index;
+    }
+    
+    /**
+     * @return true iff a calibration run is in progress
+     */
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * @return true iff the last calibration run recorded every position
+     */
+    public boolean isDone() {
+        return done;
+    }
+}
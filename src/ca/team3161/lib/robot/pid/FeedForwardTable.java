@@ -0,0 +1,107 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+/**
+ * A feed forward output for each of a set of mechanism positions, eg the
+ * output needed to hold an arm still against gravity at several angles.
+ * Between positions the output is interpolated linearly; beyond the first
+ * and last it is held constant. Looking up an output does not allocate.
+ * Calibrated tables can be saved with a GainStore.
+ */
+public class FeedForwardTable {
+    
+    private final float[] positions;
+    private final float[] outputs;
+    
+    /**
+     * @param positions the positions, in sensor units, in increasing order
+     */
+    public FeedForwardTable(final float[] positions) {
+        for (int i = 1; i < positions.length; ++i) {
+            if (positions[i] <= positions[i - 1]) {
+                throw new IllegalArgumentException("Positions must be in increasing order");
+            }
+        }
+        this.positions = new float[positions.length];
+        this.outputs = new float[positions.length];
+        System.arraycopy(positions, 0, this.positions, 0, positions.length);
+    }
+    
+    /**
+     * @return the number of positions in the table
+     */
+    public int size() {
+        return positions.length;
+    }
+    
+    /**
+     * @param index the index of a position
+     * @return the position, in sensor units
+     */
+    public float getPosition(final int index) {
+        return positions[index];
+    }
+    
+    /**
+     * @param index the index of a position
+     * @return the output recorded for the position
+     */
+    public float getOutput(final int index) {
+        return outputs[index];
+    }
+    
+    /**
+     * @param index the index of a position
+     * @param output the output needed at the position
+     */
+    public void setOutput(final int index, final float output) {
+        outputs[index] = output;
+    }
+    
+    /**
+     * @param position the measured position
+     * @return the output interpolated from the table
+     */
+    public float get(final float position) {
+        final int last = positions.length - 1;
+        if (last < 0) {
+            return 0.0f;
+        }
+        if (position <= positions[0]) {
+            return outputs[0];
+        }
+        if (position >= positions[last]) {
+            return outputs[last];
+        }
+        int i = 1;
+        while (positions[i] < position) {
+            ++i;
+        }
+        final float fraction = (position - positions[i - 1]) / (positions[i] - positions[i - 1]);
+        return outputs[i - 1] + fraction * (outputs[i] - outputs[i - 1]);
+    }
+}
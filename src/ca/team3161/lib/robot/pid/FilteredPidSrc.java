@@ -0,0 +1,102 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+/**
+ * A PIDSrc which filters the values of another PIDSrc, eg to reduce the
+ * noise amplified by a D term. Filters keep their state in fixed primitive
+ * buffers and do not allocate per sample. Each call to getValue() takes a
+ * new sample, so a filter should be read once per control cycle, eg by
+ * registering it with a SensorSnapshot. Filters may be chained.
+ */
+public abstract class FilteredPidSrc implements AnglePidSrc {
+    
+    /**
+     * The PIDSrc being filtered
+     */
+    protected final PIDSrc source;
+    
+    /**
+     * @param source the PIDSrc to filter
+     */
+    protected FilteredPidSrc(final PIDSrc source) {
+        this.source = source;
+    }
+    
+    /**
+     * @param sample a new value from the backing PIDSrc
+     * @return the filtered value
+     */
+    protected abstract float filter(float sample);
+    
+    /**
+     * @return the delay the filter adds to a steadily changing signal, in samples
+     */
+    public abstract float getLatency();
+    
+    /**
+     * Forget past samples
+     */
+    public abstract void reset();
+    
+    /**
+     * Retrieve the PIDSrc being filtered
+     * @return the PIDSrc
+     */
+    public PIDSrc getSource() {
+        return source;
+    }
+    
+    /**
+     * Inherited from PIDSrc
+     * @return the filtered value of the backing PIDSrc
+     */
+    public float getValue() {
+        return filter(source.getValue());
+    }
+    
+    /**
+     * Inherited from AnglePidSrc
+     * @return the minimal angle of the backing PIDSrc, if it is an AnglePidSrc
+     */
+    public float getMinAngle() {
+        if (source instanceof AnglePidSrc) {
+            return ((AnglePidSrc) source).getMinAngle();
+        }
+        return -Float.MAX_VALUE;
+    }
+    
+    /**
+     * Inherited from AnglePidSrc
+     * @return the maximal angle of the backing PIDSrc, if it is an AnglePidSrc
+     */
+    public float getMaxAngle() {
+        if (source instanceof AnglePidSrc) {
+            return ((AnglePidSrc) source).getMaxAngle();
+        }
+        return Float.MAX_VALUE;
+    }
+}
@@ -0,0 +1,157 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+/**
+ * PID gains for each of a set of mechanism positions, eg for an arm whose
+ * loading changes with its angle. Between positions the gains are
+ * interpolated linearly; beyond the first and last they are held constant.
+ * Set on a PID with PID.setGainSchedule(). Looking up gains does not allocate.
+ */
+public class GainSchedule {
+    
+    private final float[] positions;
+    private final float[] kP, kI, kD;
+    
+    /**
+     * @param positions the positions, in sensor units, in increasing order
+     * @param kP P constant at every position, until set otherwise
+     * @param kI I constant at every position, until set otherwise
+     * @param kD D constant at every position, until set otherwise
+     */
+    public GainSchedule(final float[] positions, final float kP, final float kI, final float kD) {
+        for (int i = 1; i < positions.length; ++i) {
+            if (positions[i] <= positions[i - 1]) {
+                throw new IllegalArgumentException("Positions must be in increasing order");
+            }
+        }
+        this.positions = new float[positions.length];
+        System.arraycopy(positions, 0, this.positions, 0, positions.length);
+        this.kP = new float[positions.length];
+        this.kI = new float[positions.length];
+        this.kD = new float[positions.length];
+        for (int i = 0; i < positions.length; ++i) {
+            setGains(i, kP, kI, kD);
+        }
+    }
+    
+    /**
+     * @return the number of positions in the schedule
+     */
+    public int size() {
+        return positions.length;
+    }
+    
+    /**
+     * @param index the index of a position
+     * @return the position, in sensor units
+     */
+    public float getPosition(final int index) {
+        return positions[index];
+    }
+    
+    /**
+     * @param position a position, in sensor units
+     * @return the index of the scheduled position closest to it
+     */
+    public int nearest(final float position) {
+        int best = 0;
+        for (int i = 1; i < positions.length; ++i) {
+            if (Math.abs(positions[i] - position) < Math.abs(positions[best] - position)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * @param index the index of a position
+     * @param kP P constant at the position
+     * @param kI I constant at the position
+     * @param kD D constant at the position
+     */
+    public void setGains(final int index, final float kP, final float kI, final float kD) {
+        this.kP[index] = kP;
+        this.kI[index] = kI;
+        this.kD[index] = kD;
+    }
+    
+    /**
+     * @param index the index of a position
+     * @return the P constant at the position
+     */
+    public float getP(final int index) {
+        return kP[index];
+    }
+    
+    /**
+     * @param index the index of a position
+     * @return the I constant at the position
+     */
+    public float getI(final int index) {
+        return kI[index];
+    }
+    
+    /**
+     * @param index the index of a position
+     * @return the D constant at the position
+     */
+    public float getD(final int index) {
+        return kD[index];
+    }
+    
+    /**
+     * Set the gains interpolated at a position on a PID loop
+     * @param pid the loop
+     * @param position the position to look up
+     */
+    void apply(final PID pid, final float position) {
+        final int last = positions.length - 1;
+        if (last < 0) {
+            return;
+        }
+        if (position <= positions[0]) {
+            pid.kP = kP[0];
+            pid.kI = kI[0];
+            pid.kD = kD[0];
+            return;
+        }
+        if (position >= positions[last]) {
+            pid.kP = kP[last];
+            pid.kI = kI[last];
+            pid.kD = kD[last];
+            return;
+        }
+        int i = 1;
+        while (positions[i] < position) {
+            ++i;
+        }
+        final float fraction = (position - positions[i - 1]) / (positions[i] - positions[i - 1]);
+        pid.kP = kP[i - 1] + fraction * (kP[i] - kP[i - 1]);
+        pid.kI = kI[i - 1] + fraction * (kI[i] - kI[i - 1]);
+        pid.kD = kD[i - 1] + fraction * (kD[i] - kD[i - 1]);
+    }
+}
@@ -0,0 +1,210 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+import com.sun.squawk.microedition.io.FileConnection;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import javax.microedition.io.Connector;
+
+/**
+ * Named sets of PID gains, GainSchedules and FeedForwardTables, saved to a
+ * file on the robot so that gains found by tuning can be loaded at startup
+ * without recompiling.
+ */
+public class GainStore {
+    
+    private static final int MAGIC = 0x47414932;
+    
+    private final String url;
+    private final Hashtable gains = new Hashtable();
+    
+    /**
+     * @param url the file to store gains in, eg "file:///gains.bin"
+     */
+    public GainStore(final String url) {
+        this.url = url;
+    }
+    
+    /**
+     * Record the gains of a PID loop
+     * @param name the name of the loop
+     * @param pid the loop
+     */
+    public synchronized void put(final String name, final PID pid) {
+        gains.put(name, new float[] {pid.getP(), pid.getI(), pid.getD()});
+    }
+    
+    /**
+     * Set stored gains on a PID loop
+     * @param name the name of the loop
+     * @param pid the loop
+     * @return true iff gains were stored under that name
+     */
+    public synchronized boolean apply(final String name, final PID pid) {
+        final float[] k = (float[]) gains.get(name);
+        if (k == null || k.length != 3) {
+            return false;
+        }
+        pid.setGains(k[0], k[1], k[2]);
+        return true;
+    }
+    
+    /**
+     * Record the positions and gains of a GainSchedule
+     * @param name the name of the schedule
+     * @param schedule the schedule
+     */
+    public synchronized void put(final String name, final GainSchedule schedule) {
+        final float[] k = new float[4 * schedule.size()];
+        for (int i = 0; i < schedule.size(); ++i) {
+            k[4 * i] = schedule.getPosition(i);
+            k[4 * i + 1] = schedule.getP(i);
+            k[4 * i + 2] = schedule.getI(i);
+            k[4 * i + 3] = schedule.getD(i);
+        }
+        gains.put(name, k);
+    }
+    
+    /**
+     * Set stored gains on a GainSchedule
+     * @param name the name of the schedule
+     * @param schedule the schedule
+     * @return true iff a schedule with the same positions was stored under that name
+     */
+    public synchronized boolean apply(final String name, final GainSchedule schedule) {
+        final float[] k = (float[]) gains.get(name);
+        if (k == null || k.length != 4 * schedule.size()) {
+            return false;
+        }
+        for (int i = 0; i < schedule.size(); ++i) {
+            if (k[4 * i] != schedule.getPosition(i)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < schedule.size(); ++i) {
+            schedule.setGains(i, k[4 * i + 1], k[4 * i + 2], k[4 * i + 3]);
+        }
+        return true;
+    }
+    
+    /**
+     * Record the positions and outputs of a FeedForwardTable
+     * @param name the name of the table
+     * @param table the table
+     */
+    public synchronized void put(final String name, final FeedForwardTable table) {
+        final float[] k = new float[2 * table.size()];
+        for (int i = 0; i < table.size(); ++i) {
+            k[2 * i] = table.getPosition(i);
+            k[2 * i + 1] = table.getOutput(i);
+        }
+        gains.put(name, k);
+    }
+    
+    /**
+     * Set stored outputs on a FeedForwardTable
+     * @param name the name of the table
+     * @param table the table
+     * @return true iff a table with the same positions was stored under that name
+     */
+    public synchronized boolean apply(final String name, final FeedForwardTable table) {
+        final float[] k = (float[]) gains.get(name);
+        if (k == null || k.length != 2 * table.size()) {
+            return false;
+        }
+        for (int i = 0; i < table.size(); ++i) {
+            if (k[2 * i] != table.getPosition(i)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < table.size(); ++i) {
+            table.setOutput(i, k[2 * i + 1]);
+        }
+        return true;
+    }
+    
+    /**
+     * Replace the stored gains with those saved in the file
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized void load() throws IOException {
+        final DataInputStream in = Connector.openDataInputStream(url);
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a gain file: " + url);
+            }
+            gains.clear();
+            final int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                final String name = in.readUTF();
+                final float[] k = new float[in.readInt()];
+                for (int j = 0; j < k.length; ++j) {
+                    k[j] = in.readFloat();
+                }
+                gains.put(name, k);
+            }
+        } finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Save the stored gains to the file
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        final FileConnection file = (FileConnection) Connector.open(url, Connector.READ_WRITE);
+        DataOutputStream out = null;
+        try {
+            if (file.exists()) {
+                file.delete();
+            }
+            file.create();
+            out = file.openDataOutputStream();
+            out.writeInt(MAGIC);
+            out.writeInt(gains.size());
+            final Enumeration names = gains.keys();
+            while (names.hasMoreElements()) {
+                final String name = (String) names.nextElement();
+                final float[] k = (float[]) gains.get(name);
+                out.writeUTF(name);
+                out.writeInt(k.length);
+                for (int j = 0; j < k.length; ++j) {
+                    out.writeFloat(k[j]);
+                }
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+            file.close();
+        }
+    }
+}
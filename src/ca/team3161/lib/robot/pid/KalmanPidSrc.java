@@ -0,0 +1,88 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+/**
+ * A scalar Kalman filter, modelling the measured value as a random walk.
+ * The ratio of the process noise to the measurement noise sets how quickly
+ * the estimate follows the measurements; the filter settles to an
+ * exponential moving average with the steady-state Kalman gain.
+ */
+public class KalmanPidSrc extends FilteredPidSrc {
+    
+    private final float processNoise, measurementNoise;
+    private float estimate, variance;
+    private boolean primed = false;
+    
+    /**
+     * @param source the PIDSrc to filter
+     * @param processNoise the variance of the change in the true value per sample
+     * @param measurementNoise the variance of the measurement noise
+     */
+    public KalmanPidSrc(final PIDSrc source, final float processNoise, final float measurementNoise) {
+        super(source);
+        if (processNoise <= 0.0f || measurementNoise < 0.0f) {
+            throw new IllegalArgumentException("Process noise must be positive and measurement noise non-negative");
+        }
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+    
+    protected synchronized float filter(final float sample) {
+        if (!primed) {
+            estimate = sample;
+            variance = measurementNoise;
+            primed = true;
+            return estimate;
+        }
+        final float predicted = variance + processNoise;
+        final float gain = predicted / (predicted + measurementNoise);
+        estimate += gain * (sample - estimate);
+        variance = (1.0f - gain) * predicted;
+        return estimate;
+    }
+    
+    /**
+     * @return the steady-state Kalman gain
+     */
+    public float getGain() {
+        final float q = processNoise;
+        final float predicted = (float) (q + Math.sqrt(q * q + 4.0f * q * measurementNoise)) / 2.0f;
+        return predicted / (predicted + measurementNoise);
+    }
+    
+    /**
+     * @return (1 - K) / K, for the steady-state gain K
+     */
+    public float getLatency() {
+        final float gain = getGain();
+        return (1.0f - gain) / gain;
+    }
+    
+    public synchronized void reset() {
+        primed = false;
+    }
+}
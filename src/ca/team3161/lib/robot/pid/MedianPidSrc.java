@@ -0,0 +1,84 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+/**
+ * A moving median filter. Rejects single-sample spikes, eg from a noisy
+ * potentiometer wiper, while following steps without smearing them.
+ */
+public class MedianPidSrc extends FilteredPidSrc {
+    
+    private final float[] samples;
+    private final float[] sorted;
+    private int head = 0, count = 0;
+    
+    /**
+     * @param source the PIDSrc to filter
+     * @param window how many samples to take the median of. Odd sizes are best.
+     */
+    public MedianPidSrc(final PIDSrc source, final int window) {
+        super(source);
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1 sample");
+        }
+        this.samples = new float[window];
+        this.sorted = new float[window];
+    }
+    
+    protected synchronized float filter(final float sample) {
+        samples[head] = sample;
+        head = (head + 1) % samples.length;
+        if (count < samples.length) {
+            ++count;
+        }
+        /* insertion sort of the (small) window into the scratch buffer */
+        for (int i = 0; i < count; ++i) {
+            final float value = samples[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j] > value) {
+                sorted[j + 1] = sorted[j];
+                --j;
+            }
+            sorted[j + 1] = value;
+        }
+        if (count % 2 == 1) {
+            return sorted[count / 2];
+        }
+        return (sorted[count / 2 - 1] + sorted[count / 2]) / 2.0f;
+    }
+    
+    /**
+     * @return half the window, less one sample
+     */
+    public float getLatency() {
+        return (samples.length - 1) / 2.0f;
+    }
+    
+    public synchronized void reset() {
+        head = 0;
+        count = 0;
+    }
+}
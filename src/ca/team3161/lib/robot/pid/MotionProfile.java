@@ -0,0 +1,179 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+/**
+ * A motion profile: the setpoint for each iteration of a control loop
+ * moving a mechanism a given distance within velocity, acceleration and
+ * (optionally) jerk limits. Without a jerk limit the velocity is
+ * trapezoidal; with one, the trapezoid is smoothed into an S-curve by a
+ * moving average over the time taken to reach full acceleration.
+ * Setpoints are generated once into arrays, so following a profile does
+ * not allocate. Generating again for the same distance reuses the cached
+ * setpoints, so profiles can be generated while disabled and reused.
+ */
+public class MotionProfile {
+    
+    private final float maxVelocity, maxAcceleration, maxJerk;
+    private final float period;
+    private float[] positions = new float[0];
+    private float[] velocities = new float[0];
+    private int length = 0;
+    private float distance = Float.NaN;
+    
+    /**
+     * @param maxVelocity the largest speed, in units per second
+     * @param maxAcceleration the largest acceleration, in units per second squared
+     * @param maxJerk the largest jerk, in units per second cubed, or 0 for a trapezoidal profile
+     * @param period the period (milliseconds) at which the profile will be followed
+     */
+    public MotionProfile(final float maxVelocity, final float maxAcceleration,
+            final float maxJerk, final long period) {
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+        this.maxJerk = maxJerk;
+        this.period = period / 1000.0f;
+    }
+    
+    /**
+     * Generate the setpoints for a move, unless they are already cached
+     * @param distance the distance to move. May be negative.
+     */
+    public synchronized void generate(final float distance) {
+        if (distance == this.distance) {
+            return;
+        }
+        final float d = Math.abs(distance);
+        final float sign = distance < 0.0f ? -1.0f : 1.0f;
+        
+        float vPeak = maxVelocity;
+        float tAccel = vPeak / maxAcceleration;
+        if (vPeak * tAccel > d) {
+            vPeak = (float) Math.sqrt(d * maxAcceleration);
+            tAccel = vPeak / maxAcceleration;
+        }
+        final float tCruise = vPeak > 0.0f ? (d - vPeak * tAccel) / vPeak : 0.0f;
+        final float total = 2.0f * tAccel + tCruise;
+        final int ticks = Math.max(1, (int) Math.ceil(total / period));
+        final int window = maxJerk > 0.0f
+                ? Math.max(1, (int) (maxAcceleration / maxJerk / period + 0.5f)) : 1;
+        final int n = ticks + window - 1;
+        
+        /* per-tick distance travelled on the trapezoid */
+        final float[] steps = new float[ticks];
+        float previous = 0.0f;
+        for (int k = 0; k < ticks; ++k) {
+            final float p = k == ticks - 1 ? d : trapezoid((k + 1) * period, d, vPeak, tAccel, tCruise, total);
+            steps[k] = p - previous;
+            previous = p;
+        }
+        
+        final float[] newPositions = new float[n];
+        final float[] newVelocities = new float[n];
+        float sum = 0.0f;
+        float position = 0.0f;
+        for (int k = 0; k < n; ++k) {
+            if (k < ticks) {
+                sum += steps[k];
+            }
+            if (k >= window) {
+                sum -= steps[k - window];
+            }
+            position += sum / window;
+            newPositions[k] = sign * position;
+            newVelocities[k] = sign * sum / window / period;
+        }
+        newPositions[n - 1] = distance;
+        newVelocities[n - 1] = 0.0f;
+        
+        positions = newPositions;
+        velocities = newVelocities;
+        length = n;
+        this.distance = distance;
+    }
+    
+    /**
+     * @return the distance covered at time t along a trapezoidal velocity profile
+     */
+    private float trapezoid(final float t, final float d, final float vPeak,
+            final float tAccel, final float tCruise, final float total) {
+        if (t < tAccel) {
+            return 0.5f * maxAcceleration * t * t;
+        }
+        if (t < tAccel + tCruise) {
+            return 0.5f * maxAcceleration * tAccel * tAccel + vPeak * (t - tAccel);
+        }
+        if (t < total) {
+            final float remaining = total - t;
+            return d - 0.5f * maxAcceleration * remaining * remaining;
+        }
+        return d;
+    }
+    
+    /**
+     * @return the number of iterations the profile lasts
+     */
+    public synchronized int getLength() {
+        return length;
+    }
+    
+    /**
+     * @return the distance this profile moves
+     */
+    public synchronized float getDistance() {
+        return distance;
+    }
+    
+    /**
+     * @return how long (milliseconds) the profile lasts
+     */
+    public synchronized long getDuration() {
+        return (long) (length * period * 1000.0f);
+    }
+    
+    /**
+     * @param tick the iteration, counting from 0
+     * @return the setpoint relative to the starting position; the final
+     * position once the profile has ended
+     */
+    public synchronized float getPosition(final int tick) {
+        if (length == 0) {
+            return 0.0f;
+        }
+        return positions[Math.min(tick, length - 1)];
+    }
+    
+    /**
+     * @param tick the iteration, counting from 0
+     * @return the profile velocity, in units per second; 0 once the profile has ended
+     */
+    public synchronized float getVelocity(final int tick) {
+        if (tick >= length) {
+            return 0.0f;
+        }
+        return velocities[tick];
+    }
+}
@@ -25,9 +25,21 @@
 
 package ca.team3161.lib.robot.pid;
 
+import ca.team3161.lib.utils.Utils;
+import edu.wpi.first.wpilibj.Utility;
+
 /**
  * A PID loop, which uses a PIDSrc and a set of constants to iteratively determine
  * output values with which a system can reach and maintain a target value.
+ * By default each call to pid() is assumed to be exactly one tick after the
+ * previous one. In timed mode (see setTimed()) the I and D terms are instead
+ * scaled by the measured time between calls, so that loop jitter does not
+ * change the effective gains, and the D term acts on the measurement rather
+ * than the error, so that it does not kick when the target changes.
+ * Optionally, the loop only counts as at its target once it has settled
+ * there (see setSettle()), and its output slews at a limited rate (see
+ * setSlewRate()). The gains may be scheduled by position (see
+ * setGainSchedule()).
  */
 public class PID {
     
@@ -46,6 +58,25 @@ public class PID {
      */
     protected boolean atTarget;
     
+    /**
+     * The measured value on the previous iteration, used in timed mode
+     */
+    protected float prevMeasurement;
+    
+    private boolean timed = false;
+    private long nominalPeriod = 20000;
+    private long lastTime = 0;
+    private float derivativeFilter = 1.0f;
+    private float integralLimit = 1.0f;
+    private float backCalculation = 0.0f;
+    private float minOutput = -1.0f, maxOutput = 1.0f;
+    private float settleTicks = 1.0f, settleRate = Float.MAX_VALUE;
+    private float inBand = 0.0f;
+    private float slewRate = 0.0f;
+    private float prevOutput = 0.0f;
+    private volatile GainSchedule schedule;
+    private boolean scheduleByTarget = true;
+    
     /**
      * @param source the PIDSrc source sensor
      * @param deadband filter value - do not act when current error is within this bound
@@ -64,12 +95,186 @@ public class PID {
     }
     
     /**
-     * Reset the state of this PID loop
+     * Change the gains, eg to ones found by tuning
+     * @param kP P constant
+     * @param kI I constant
+     * @param kD D constant
+     */
+    public void setGains(final float kP, final float kI, final float kD) {
+        this.kP = kP;
+        this.kI = kI;
+        this.kD = kD;
+    }
+    
+    /**
+     * @return the P constant
+     */
+    public float getP() {
+        return kP;
+    }
+    
+    /**
+     * @return the I constant
+     */
+    public float getI() {
+        return kI;
+    }
+    
+    /**
+     * @return the D constant
+     */
+    public float getD() {
+        return kD;
+    }
+    
+    /**
+     * Use timed mode. kI and kD keep their meaning as per-tick gains at the
+     * nominal period, but each iteration's I and D contributions are scaled
+     * by the measured time since the previous iteration.
+     * @param nominalPeriod the intended time between iterations (milliseconds)
+     */
+    public void setTimed(final long nominalPeriod) {
+        this.timed = true;
+        this.nominalPeriod = nominalPeriod * 1000;
+    }
+    
+    /**
+     * Low-pass filter the D term
+     * @param alpha the weight, in (0, 1], given to each new sample. 1 disables filtering
+     */
+    public void setDerivativeFilter(final float alpha) {
+        this.derivativeFilter = alpha;
+    }
+    
+    /**
+     * Limit the magnitude of the I term in timed mode, and clamp the
+     * accumulated error as well, so it cannot wind up beyond this limit.
+     * Untimed loops keep the original behaviour: the I term is only
+     * limited above, at 1.
+     * @param limit the largest magnitude of the I term
+     */
+    public void setIntegralLimit(final float limit) {
+        this.integralLimit = limit;
+    }
+    
+    /**
+     * Use back-calculation anti-windup in timed mode: while the output is
+     * saturated, the accumulated error is unwound in proportion to the
+     * amount by which the output was limited.
+     * @param gain the back-calculation gain. 0 disables back-calculation
+     */
+    public void setBackCalculation(final float gain) {
+        this.backCalculation = gain;
+    }
+    
+    /**
+     * @param min the smallest output value
+     * @param max the largest output value
+     */
+    public void setOutputLimits(final float min, final float max) {
+        this.minOutput = min;
+        this.maxOutput = max;
+    }
+    
+    /**
+     * Only report being at the target once the error has stayed within the
+     * deadband for a number of ticks while the measurement changes slowly,
+     * rather than as soon as a single sample lands within the deadband
+     * @param ticks how many ticks the error must stay within the deadband
+     * @param maxRate the largest (filtered) change in the measurement per
+     * tick at which the loop counts as settled
+     */
+    public void setSettle(final int ticks, final float maxRate) {
+        this.settleTicks = ticks;
+        this.settleRate = maxRate;
+    }
+    
+    /**
+     * Limit how quickly the output may change, eg so that a drivetrain
+     * does not saturate and slip when the target jumps
+     * @param maxChange the largest change in output per tick. 0 disables limiting
+     */
+    public void setSlewRate(final float maxChange) {
+        this.slewRate = maxChange;
+    }
+    
+    /**
+     * Take the gains from a schedule on each iteration, overriding the
+     * constants given to the constructor and setGains()
+     * @param schedule the schedule, or null to keep the current gains fixed
+     * @param byTarget true to look up gains at the target, false to look
+     * them up at the measured value
+     */
+    public void setGainSchedule(final GainSchedule schedule, final boolean byTarget) {
+        this.scheduleByTarget = byTarget;
+        this.schedule = schedule;
+    }
+    
+    /**
+     * @return the gain schedule, or null if the gains are fixed
+     */
+    public GainSchedule getGainSchedule() {
+        return schedule;
+    }
+    
+    /**
+     * Reset the state of this PID loop. In timed mode this also clears
+     * atTarget() until the next iteration.
      */
     public void clear() {
         integralError = 0.0f;
         prevError = 0.0f;
         deltaError = 0.0f;
+        lastTime = 0;
+        inBand = 0.0f;
+        prevOutput = 0.0f;
+        if (timed) {
+            atTarget = false;
+        }
+    }
+    
+    /**
+     * @return the number of nominal ticks since the previous iteration:
+     * always 1 unless in timed mode, and 0 on the first iteration after clear()
+     */
+    private float elapsedTicks() {
+        if (!timed) {
+            return 1.0f;
+        }
+        final long now = getTime();
+        final long last = lastTime;
+        lastTime = now;
+        final long elapsed = Utils.fpgaDelta(now, last);
+        if (last == 0 || elapsed <= 0) {
+            return 0.0f;
+        }
+        return (float) elapsed / nominalPeriod;
+    }
+    
+    /**
+     * @return the current time (microseconds) used in timed mode: the FPGA
+     * time, unless overridden, eg by a simulation
+     */
+    protected long getTime() {
+        return Utility.getFPGATime();
+    }
+    
+    /**
+     * A term added to the output, eg to hold a load against gravity.
+     * Applied even when within the deadband.
+     * @param measurement the measured value on this iteration
+     * @return the feed forward output, 0 by default
+     */
+    protected float feedForward(final float measurement) {
+        return 0.0f;
+    }
+    
+    /**
+     * @param measurement a measured value
+     * @return the feed forward output this loop would apply at that value
+     */
+    public final float getFeedForward(final float measurement) {
+        return feedForward(measurement);
     }
     
     /**
@@ -78,44 +283,103 @@ public class PID {
      * @return the output value to set to eg a SpeedController to reach the specified target
      */
     public float pid(final float target) {
-        float kErr;
+        final float measurement = source.getValue();
+        final float kErr = target - measurement;
+        final float ticks = elapsedTicks();
+        final GainSchedule gains = schedule;
+        if (gains != null) {
+            gains.apply(this, scheduleByTarget ? target : measurement);
+        }
         float pOut;
         float iOut;
         float dOut;
         float output;
-
-        kErr = (float)(target - source.getValue());
-
-        deltaError = prevError - kErr;
+        
+        float rawDelta;
+        if (timed) {
+            rawDelta = ticks > 0.0f ? (measurement - prevMeasurement) / ticks : 0.0f;
+            integralError += kErr * ticks;
+            if (kI != 0.0f) {
+                final float maxIntegral = Math.abs(integralLimit / kI);
+                integralError = clamp(integralError, -maxIntegral, maxIntegral);
+            }
+        } else {
+            rawDelta = prevError - kErr;
+            integralError += kErr;
+        }
+        if (derivativeFilter < 1.0f) {
+            deltaError += derivativeFilter * (rawDelta - deltaError);
+        } else {
+            deltaError = rawDelta;
+        }
         prevError = kErr;
-        integralError += kErr;
+        prevMeasurement = measurement;
 
         pOut = kErr * kP;
-        iOut = integralError * kI;
-        dOut = deltaError * kD;
-
-        if (iOut > 1.0f) {
-            iOut = 1.0f;
+        if (timed) {
+            iOut = clamp(integralError * kI, -integralLimit, integralLimit);
+        } else {
+            iOut = integralError * kI;
+            if (iOut > 1.0f) {
+                iOut = 1.0f;
+            }
         }
+        dOut = deltaError * kD;
+        
+        final float feedForward = feedForward(measurement);
         
         if (Math.abs(kErr) < deadband) {
-            atTarget = true;
-            return 0.0f;
+            if (Math.abs(deltaError) <= settleRate) {
+                inBand += timed ? ticks : 1.0f;
+            } else {
+                inBand = 0.0f;
+            }
+            atTarget = inBand >= settleTicks;
+            return slew(feedForward, ticks);
         } else {
+            inBand = 0.0f;
             atTarget = false;
         }
 
-        output = (pOut + iOut + dOut);
-
-        if (output > 1.0f) {
-            return 1.0f;
-        }
-        if (output < -1.0f) {
-            return -1.0f;
+        final float raw = pOut + iOut + dOut + feedForward;
+        output = slew(clamp(raw, minOutput, maxOutput), ticks);
+        if (timed && backCalculation != 0.0f && kI != 0.0f) {
+            integralError += backCalculation * (output - raw) / kI;
         }
         return output;
     }
     
+    /**
+     * @param output the desired output on this iteration
+     * @param ticks the number of nominal ticks since the previous iteration
+     * @return the output, limited by the slew rate
+     */
+    private float slew(final float output, final float ticks) {
+        if (slewRate > 0.0f) {
+            final float maxChange = slewRate * (ticks > 0.0f ? ticks : 1.0f);
+            prevOutput = clamp(output, prevOutput - maxChange, prevOutput + maxChange);
+        } else {
+            prevOutput = output;
+        }
+        return prevOutput;
+    }
+    
+    /**
+     * @param value a value
+     * @param min the lower bound
+     * @param max the upper bound
+     * @return the value, limited to [min, max]
+     */
+    protected static float clamp(final float value, final float min, final float max) {
+        if (value > max) {
+            return max;
+        }
+        if (value < min) {
+            return min;
+        }
+        return value;
+    }
+    
     /**
      * @return the PIDSrc (PID source sensor) used by this PID loop
      */
@@ -124,7 +388,7 @@ public class PID {
     }
     
     /**
-     * @return whether this PID loop has reached the specified target value
+     * @return whether this PID loop has reached, and settled at, the specified target value
      */
     public boolean atTarget() {
         return atTarget;
@@ -27,11 +27,14 @@ package ca.team3161.lib.robot.pid;
 
 /**
  * A PID controller for inverted pendulum systems (PID pendulum... get it?)
+ * The feed forward holding the pendulum against gravity is linear in the
+ * angle from the balance point, unless a calibrated FeedForwardTable is set.
  */
 public class PIDulum extends PID {
     
     private final float offsetAngle;
     private final float torqueConstant;
+    private volatile FeedForwardTable table;
     
     /**
      * @param source the PIDSrc source sensor
@@ -51,50 +54,32 @@ public class PIDulum extends PID {
     }
     
     /**
-     * Iterate the PID loop
-     * @param target the desired target value. Units depend on the context of this PID
-     * @return the output value to set to eg a SpeedController to reach the specified target
+     * Use a calibrated table rather than the linear torque model to hold the
+     * pendulum against gravity
+     * @param table the table, indexed by angle, or null for the linear model
      */
-    public float pid(final float target) {
-        float kErr;
-        float pOut;
-        float iOut;
-        float dOut;
-        float feedForward;
-        float output;
-
-        kErr = (float)(target - source.getValue());
-
-        deltaError = prevError - kErr;
-        prevError = kErr;
-        integralError += kErr;
-
-        pOut = kErr * kP;
-        iOut = integralError * kI;
-        dOut = deltaError * kD;
-
-        if (iOut > 1) {
-            iOut = 1;
-        }
-        
-        feedForward = torqueConstant * (float)(source.getValue() - offsetAngle);
-        
-        if (Math.abs(kErr) < deadband) {
-            atTarget = true;
-            return feedForward;
-        } else {
-            atTarget = false;
-        }
-
-        output = (pOut + iOut + dOut + feedForward);
-
-        if (output > 1.0f) {
-            return 1.0f;
-        }
-        if (output < -1.0f) {
-            return -1.0f;
+    public void setFeedForwardTable(final FeedForwardTable table) {
+        this.table = table;
+    }
+    
+    /**
+     * @return the calibrated table, or null if the linear model is used
+     */
+    public FeedForwardTable getFeedForwardTable() {
+        return table;
+    }
+    
+    /**
+     * Hold the pendulum against gravity
+     * @param measurement the measured angle on this iteration
+     * @return the feed forward output
+     */
+    protected float feedForward(final float measurement) {
+        final FeedForwardTable t = table;
+        if (t != null) {
+            return t.get(measurement);
         }
-        return output;
+        return torqueConstant * (measurement - offsetAngle);
     }
     
 }
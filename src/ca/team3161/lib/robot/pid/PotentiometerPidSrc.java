@@ -34,7 +34,8 @@ import edu.wpi.first.wpilibj.interfaces.Potentiometer;
 public class PotentiometerPidSrc implements AnglePidSrc {
     
     private final Potentiometer pot;
-    private final float minVolt, maxVolt, minAngle, maxAngle;
+    private final float minAngle, maxAngle;
+    private final float slope, offset;
     
     /**
      * Create a new PotentiometerPidSrc instance
@@ -48,10 +49,10 @@ public class PotentiometerPidSrc implements AnglePidSrc {
             final float minVolt, final float maxVolt,
             final float minAngle, final float maxAngle) {
         this.pot = pot;
-        this.minVolt = minVolt;
-        this.maxVolt = maxVolt;
         this.minAngle = minAngle;
         this.maxAngle = maxAngle;
+        this.slope = (maxAngle - minAngle) / (maxVolt - minVolt);
+        this.offset = minAngle - slope * minVolt;
     }
     
     /**
@@ -67,8 +68,6 @@ public class PotentiometerPidSrc implements AnglePidSrc {
      * @return the measured value of this PIDSrc
      */
     public float getValue() {
-        final float slope = (maxAngle - minAngle) / (maxVolt - minVolt);
-        final float offset = minAngle - slope * minVolt;
         return (float)(slope * pot.get() + offset);
     }
     
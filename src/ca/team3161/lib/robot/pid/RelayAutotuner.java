@@ -0,0 +1,202 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+import ca.team3161.lib.utils.Utils;
+import edu.wpi.first.wpilibj.Utility;
+
+/**
+ * Relay-feedback (Astrom-Hagglund) autotuner for a PID loop.
+ * The actuator is driven with a bang-bang signal around a setpoint, which
+ * makes the mechanism oscillate at its ultimate period. From the amplitude
+ * of the oscillation the ultimate gain is found, and from that suggested
+ * kP/kI/kD, using the Ziegler-Nichols "no overshoot" rule, converted to
+ * the per-tick units used by PID.
+ * Call step() once per loop iteration and send its result to the actuator
+ * until isDone() returns true.
+ */
+public class RelayAutotuner {
+    
+    private final PIDSrc source;
+    private final float amplitude, hysteresis;
+    private final float direction;
+    private final int cycles;
+    
+    private float setpoint, bias;
+    private boolean high, running, done;
+    private int switches, measured;
+    private long lastRise;
+    private float max, min;
+    private float amplitudeSum;
+    private long periodSum;
+    
+    /**
+     * @param source the PIDSrc of the loop being tuned
+     * @param amplitude the relay output amplitude
+     * @param hysteresis the error (in sensor units) the measurement must pass
+     * beyond the setpoint before the relay switches, to reject noise
+     * @param inverted true iff a positive output decreases the sensor value
+     * @param cycles how many oscillations to average over
+     */
+    public RelayAutotuner(final PIDSrc source, final float amplitude, final float hysteresis,
+            final boolean inverted, final int cycles) {
+        this.source = source;
+        this.amplitude = amplitude;
+        this.hysteresis = hysteresis;
+        this.direction = inverted ? -1.0f : 1.0f;
+        this.cycles = cycles;
+    }
+    
+    /**
+     * Begin a new tuning run
+     * @param setpoint the value to oscillate around
+     * @param bias an output added to the relay, eg to hold a load against gravity
+     */
+    public void start(final float setpoint, final float bias) {
+        this.setpoint = setpoint;
+        this.bias = bias;
+        this.high = source.getValue() < setpoint;
+        this.switches = 0;
+        this.measured = 0;
+        this.amplitudeSum = 0.0f;
+        this.periodSum = 0;
+        this.max = -Float.MAX_VALUE;
+        this.min = Float.MAX_VALUE;
+        this.running = true;
+        this.done = false;
+    }
+    
+    /**
+     * Stop tuning without a result
+     */
+    public void abort() {
+        running = false;
+    }
+    
+    /**
+     * Iterate the relay
+     * @return the output to send to the actuator
+     */
+    public float step() {
+        if (!running) {
+            return bias;
+        }
+        final float value = source.getValue();
+        if (value > max) {
+            max = value;
+        }
+        if (value < min) {
+            min = value;
+        }
+        final float error = setpoint - value;
+        if (high && error < -hysteresis) {
+            high = false;
+            ++switches;
+        } else if (!high && error > hysteresis) {
+            high = true;
+            ++switches;
+            final long now = Utility.getFPGATime();
+            /* The first full cycle is the transient from the starting position */
+            if (switches > 2) {
+                periodSum += Utils.fpgaDelta(now, lastRise);
+                amplitudeSum += (max - min) / 2.0f;
+                if (++measured >= cycles) {
+                    running = false;
+                    done = true;
+                    return bias;
+                }
+            }
+            lastRise = now;
+            max = -Float.MAX_VALUE;
+            min = Float.MAX_VALUE;
+        }
+        return bias + direction * (high ? amplitude : -amplitude);
+    }
+    
+    /**
+     * @return true iff a tuning run is in progress
+     */
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * @return true iff the last tuning run completed and results are available
+     */
+    public boolean isDone() {
+        return done;
+    }
+    
+    /**
+     * @return the ultimate gain Ku, in output per sensor unit
+     */
+    public float getUltimateGain() {
+        final float a = amplitudeSum / measured;
+        final float h = Math.min(hysteresis, a * 0.9f);
+        return (float) (4.0 * amplitude / (Math.PI * Math.sqrt(a * a - h * h)));
+    }
+    
+    /**
+     * @return the ultimate period Tu (seconds)
+     */
+    public float getUltimatePeriod() {
+        return periodSum / (measured * 1000000.0f);
+    }
+    
+    /**
+     * @return the suggested P constant
+     */
+    public float getP() {
+        return direction * 0.2f * getUltimateGain();
+    }
+    
+    /**
+     * @param period the period (milliseconds) at which the PID loop will run
+     * @return the suggested I constant, per tick
+     */
+    public float getI(final long period) {
+        return direction * 0.4f * getUltimateGain() / getUltimatePeriod() * (period / 1000.0f);
+    }
+    
+    /**
+     * The D term of PID is taken on the change in error per tick with the
+     * opposite sign to P, hence the sign here.
+     * @param period the period (milliseconds) at which the PID loop will run
+     * @return the suggested D constant, per tick
+     */
+    public float getD(final long period) {
+        return -direction * 0.066f * getUltimateGain() * getUltimatePeriod() / (period / 1000.0f);
+    }
+    
+    /**
+     * Set the suggested gains on a PID loop
+     * @param pid the loop that was tuned
+     * @param period the period (milliseconds) at which the PID loop runs
+     */
+    public void apply(final PID pid, final long period) {
+        pid.setGains(getP(), getI(period), getD(period));
+    }
+}
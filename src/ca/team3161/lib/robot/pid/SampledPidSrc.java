@@ -0,0 +1,125 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+import ca.team3161.lib.utils.Utils;
+import edu.wpi.first.wpilibj.Utility;
+
+/**
+ * A PIDSrc which returns the value its backing PIDSrc had when it was last
+ * sampled, so that every reader within a control cycle sees the same value
+ * and the sensor is only read once. Obtained from a SensorSnapshot, which
+ * samples it at the start of each cycle. If it has not been sampled for two
+ * cycles, eg because the cycle is not running, reads sample it themselves,
+ * at most once per cycle period, so that a filtering backing PIDSrc is not
+ * fed extra samples.
+ */
+public class SampledPidSrc implements AnglePidSrc {
+    
+    private final PIDSrc source;
+    private final long maxAge;
+    private volatile float value;
+    private volatile long timestamp = 0;
+    private volatile long expires = 0;
+    
+    /**
+     * @param source the PIDSrc to sample
+     * @param maxAge how long (microseconds) a sample may be used for
+     */
+    SampledPidSrc(final PIDSrc source, final long maxAge) {
+        this.source = source;
+        this.maxAge = maxAge;
+    }
+    
+    /**
+     * Read the backing PIDSrc
+     */
+    public void sample() {
+        sample(maxAge);
+    }
+    
+    /**
+     * Read the backing PIDSrc
+     * @param lifetime how long (microseconds) the sample may be used for
+     */
+    private void sample(final long lifetime) {
+        value = source.getValue();
+        timestamp = Utility.getFPGATime();
+        expires = timestamp + lifetime;
+    }
+    
+    /**
+     * Retrieve the PIDSrc being sampled
+     * @return the PIDSrc
+     */
+    public PIDSrc getSource() {
+        return source;
+    }
+    
+    /**
+     * @return the FPGA time (microseconds) of the last sample, or 0 if never sampled
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    /**
+     * Inherited from PIDSrc
+     * @return the value of the backing PIDSrc at the last sample, which is
+     * taken now if the last one is too old
+     */
+    public float getValue() {
+        final long remaining = Utils.fpgaDelta(expires, Utility.getFPGATime());
+        // out of range if unread for so long that the FPGA clock has wrapped
+        if (remaining <= 0 || remaining > maxAge) {
+            // the control cycle is not sampling; a sample lasts one period
+            sample(maxAge / 2);
+        }
+        return value;
+    }
+    
+    /**
+     * Inherited from AnglePidSrc
+     * @return the minimal angle of the backing PIDSrc, if it is an AnglePidSrc
+     */
+    public float getMinAngle() {
+        if (source instanceof AnglePidSrc) {
+            return ((AnglePidSrc) source).getMinAngle();
+        }
+        return -Float.MAX_VALUE;
+    }
+    
+    /**
+     * Inherited from AnglePidSrc
+     * @return the maximal angle of the backing PIDSrc, if it is an AnglePidSrc
+     */
+    public float getMaxAngle() {
+        if (source instanceof AnglePidSrc) {
+            return ((AnglePidSrc) source).getMaxAngle();
+        }
+        return Float.MAX_VALUE;
+    }
+}
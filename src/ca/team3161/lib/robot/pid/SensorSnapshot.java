@@ -0,0 +1,65 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.robot.pid;
+
+import java.util.Vector;
+
+/**
+ * A set of PIDSrcs sampled together once per control cycle. Call sample()
+ * at the start of each cycle; PID loops and other readers then use the
+ * SampledPidSrcs returned by register(), which hold the sampled values.
+ */
+public class SensorSnapshot {
+    
+    private final Vector sources = new Vector();
+    private final long maxAge;
+    
+    /**
+     * @param period the period (milliseconds) of the control cycle
+     */
+    public SensorSnapshot(final long period) {
+        this.maxAge = 2 * period * 1000;
+    }
+    
+    /**
+     * @param source a PIDSrc to sample each cycle
+     * @return a PIDSrc returning the sampled values
+     */
+    public SampledPidSrc register(final PIDSrc source) {
+        final SampledPidSrc sampled = new SampledPidSrc(source, maxAge);
+        sources.addElement(sampled);
+        return sampled;
+    }
+    
+    /**
+     * Sample every registered PIDSrc
+     */
+    public void sample() {
+        for (int i = 0; i < sources.size(); ++i) {
+            ((SampledPidSrc) sources.elementAt(i)).sample();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.utils;
+
+/**
+ * A fixed-size histogram of non-negative integer samples, such as durations.
+ * All storage is allocated up front, so recording a sample never allocates.
+ * Samples larger than the range of the histogram are counted in a final
+ * overflow bucket.
+ */
+public class Histogram {
+    
+    private final int[] buckets;
+    private final long bucketWidth;
+    private long count, sum, min, max;
+    
+    /**
+     * @param bucketCount the number of buckets, not including the overflow bucket
+     * @param bucketWidth the range of sample values covered by each bucket
+     */
+    public Histogram(final int bucketCount, final long bucketWidth) {
+        Assert.assertTrue("Histogram must have at least one bucket", bucketCount > 0);
+        Assert.assertTrue("Histogram bucket width must be positive", bucketWidth > 0);
+        this.buckets = new int[bucketCount + 1];
+        this.bucketWidth = bucketWidth;
+        clear();
+    }
+    
+    /**
+     * Add a sample. Negative samples are counted as zero.
+     * @param value the sample to record
+     */
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        final long index = value / bucketWidth;
+        if (index >= buckets.length - 1) {
+            ++buckets[buckets.length - 1];
+        } else {
+            ++buckets[(int) index];
+        }
+        ++count;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+    
+    /**
+     * Discard all recorded samples
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < buckets.length; ++i) {
+            buckets[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+    
+    /**
+     * @return the number of samples recorded
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+    
+    /**
+     * @return the mean of all recorded samples, or 0 if there are none
+     */
+    public synchronized double getMean() {
+        if (count == 0) {
+            return 0.0d;
+        }
+        return (double) sum / count;
+    }
+    
+    /**
+     * @return the smallest recorded sample, or 0 if there are none
+     */
+    public synchronized long getMin() {
+        return count == 0 ? 0 : min;
+    }
+    
+    /**
+     * @return the largest recorded sample, or 0 if there are none
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+    
+    /**
+     * Estimate a percentile from the bucket counts. The result is the upper
+     * bound of the bucket containing the percentile, or the maximum sample if
+     * that falls in the overflow bucket.
+     * @param percentile in the range [0, 100]
+     * @return an upper bound on the given percentile, or 0 if there are no samples
+     */
+    public synchronized long getPercentile(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = (long) java.lang.Math.ceil(count * percentile / 100.0d);
+        long seen = 0;
+        for (int i = 0; i < buckets.length - 1; ++i) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return java.lang.Math.min((i + 1) * bucketWidth, max);
+            }
+        }
+        return max;
+    }
+    
+    /**
+     * @return the number of samples which were too large for the histogram range
+     */
+    public synchronized int getOverflowCount() {
+        return buckets[buckets.length - 1];
+    }
+    
+    /**
+     * @param bucket the index of the bucket. The overflow bucket is at index getBucketCount()
+     * @return the number of samples recorded in that bucket
+     */
+    public synchronized int getBucket(final int bucket) {
+        return buckets[bucket];
+    }
+    
+    /**
+     * @return the number of buckets, not including the overflow bucket
+     */
+    public int getBucketCount() {
+        return buckets.length - 1;
+    }
+    
+    /**
+     * @return the range of sample values covered by each bucket
+     */
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+}
@@ -25,6 +25,8 @@
 
 package ca.team3161.lib.utils;
 
+import edu.wpi.first.wpilibj.Utility;
+
 /**
  * Pretty printing arrays, rounding doubles, and ensuring PWM values fall within
  * the range [-1.0, 1.0], etc.
@@ -59,4 +61,26 @@ public class Utils {
         if (val > 1.0d) return 1.0d;
         return val;
     }
+    
+    /**
+     * The signed difference between two FPGA timestamps. The FPGA clock is an
+     * unsigned 32-bit count of microseconds, which wraps around roughly every
+     * 71.6 minutes, so timestamps must never be compared directly. The result
+     * is correct across a wrap as long as the two times are within about
+     * 35.8 minutes of each other.
+     * @param later an FPGA time (microseconds)
+     * @param earlier an FPGA time (microseconds)
+     * @return later - earlier (microseconds), negative if later is actually earlier
+     */
+    public static long fpgaDelta(final long later, final long earlier) {
+        return (int) (later - earlier);
+    }
+    
+    /**
+     * @param since an FPGA time (microseconds) in the past
+     * @return the time elapsed since then (microseconds)
+     */
+    public static long fpgaElapsed(final long since) {
+        return fpgaDelta(Utility.getFPGATime(), since);
+    }
 }
@@ -0,0 +1,281 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.lib.utils.controls;
+
+import ca.team3161.lib.utils.Utils;
+import com.sun.squawk.microedition.io.FileConnection;
+import edu.wpi.first.wpilibj.GenericHID;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import javax.microedition.io.Connector;
+
+/**
+ * A recording of raw Gamepad inputs, plus any number of extra channels such
+ * as mechanism commands, taken once per robot loop.
+ * Frames are kept in preallocated primitive arrays, so recording never
+ * allocates; once full, further frames are dropped, so that a recording
+ * always starts at the beginning of the run it was taken from.
+ * A recording can be saved to and loaded from a compact binary file, and
+ * played back through LogitechDualAction.setPlayback().
+ * Not thread safe: record and save from the same thread, eg the main robot
+ * thread in teleopThreadsafe() and disabledInit().
+ */
+public class InputRecording {
+    
+    /**
+     * The number of axes recorded per Gamepad
+     */
+    public static final int AXES = 6;
+    
+    /**
+     * The number of buttons recorded per Gamepad
+     */
+    public static final int BUTTONS = 12;
+    
+    private static final int MAGIC = 0x33313631;
+    private static final int VERSION = 1;
+    private static final float AXIS_SCALE = 32767.0f;
+    
+    private final int capacity, pads, channels;
+    private final long[] times;
+    private final float[] axes;
+    private final int[] buttons;
+    private final float[] values;
+    private final float[] nextValues;
+    private int size = 0;
+    private int cursor = -1;
+    
+    /**
+     * @param capacity the maximum number of frames to hold
+     * @param pads the number of Gamepads recorded in each frame
+     * @param channels the number of extra values recorded in each frame
+     */
+    public InputRecording(final int capacity, final int pads, final int channels) {
+        this.capacity = capacity;
+        this.pads = pads;
+        this.channels = channels;
+        this.times = new long[capacity];
+        this.axes = new float[capacity * pads * AXES];
+        this.buttons = new int[capacity * pads];
+        this.values = new float[capacity * channels];
+        this.nextValues = new float[channels];
+    }
+    
+    /**
+     * Discard all recorded frames
+     */
+    public void clear() {
+        size = 0;
+        cursor = -1;
+    }
+    
+    /**
+     * @return the number of recorded frames
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Set the value of an extra channel for the next recorded frame
+     * @param channel the channel index
+     * @param value the value
+     */
+    public void setChannel(final int channel, final float value) {
+        nextValues[channel] = value;
+    }
+    
+    /**
+     * @return true iff no more frames can be recorded
+     */
+    public boolean isFull() {
+        return size == capacity;
+    }
+    
+    /**
+     * Record one frame of raw inputs. Does not allocate.
+     * @param time the FPGA time of this frame (microseconds)
+     * @param gamepads the Gamepads to record, one per recorded pad
+     * @return false if the recording is full and the frame was dropped
+     */
+    public boolean record(final long time, final Gamepad[] gamepads) {
+        if (size == capacity) {
+            return false;
+        }
+        final int frame = size;
+        times[frame] = time;
+        for (int p = 0; p < pads; ++p) {
+            final GenericHID hid = gamepads[p].getBackingHID();
+            final int base = (frame * pads + p) * AXES;
+            for (int a = 0; a < AXES; ++a) {
+                axes[base + a] = (float) hid.getRawAxis(a + 1);
+            }
+            int mask = 0;
+            for (int b = 0; b < BUTTONS; ++b) {
+                if (hid.getRawButton(b + 1)) {
+                    mask |= 1 << b;
+                }
+            }
+            buttons[frame * pads + p] = mask;
+        }
+        System.arraycopy(nextValues, 0, values, frame * channels, channels);
+        ++size;
+        return true;
+    }
+    
+    /**
+     * @param index a frame index, 0 being the oldest frame
+     * @return the time of the frame (microseconds) relative to the oldest frame
+     */
+    public long getTime(final int index) {
+        return Utils.fpgaDelta(times[index], times[0]);
+    }
+    
+    /**
+     * Select the frame read by getAxis, getButton and getChannel
+     * @param index a frame index, 0 being the oldest frame, or -1 for a
+     * neutral frame in which all axes and channels read 0 and no buttons
+     * are pressed
+     */
+    public void setCursor(final int index) {
+        cursor = index;
+    }
+    
+    /**
+     * @param pad the recorded pad index
+     * @param axis the raw axis, as for GenericHID.getRawAxis()
+     * @return the raw axis value in the current frame
+     */
+    public float getAxis(final int pad, final int axis) {
+        if (cursor < 0) {
+            return 0.0f;
+        }
+        return axes[(cursor * pads + pad) * AXES + axis - 1];
+    }
+    
+    /**
+     * @param pad the recorded pad index
+     * @param button the raw button, as for GenericHID.getRawButton()
+     * @return true iff the button was pressed in the current frame
+     */
+    public boolean getButton(final int pad, final int button) {
+        if (cursor < 0 || button < 1 || button > BUTTONS) {
+            return false;
+        }
+        return (buttons[cursor * pads + pad] & (1 << (button - 1))) != 0;
+    }
+    
+    /**
+     * @param channel the channel index
+     * @return the value of the channel in the current frame
+     */
+    public float getChannel(final int channel) {
+        if (cursor < 0) {
+            return 0.0f;
+        }
+        return values[cursor * channels + channel];
+    }
+    
+    /**
+     * Save the recorded frames, oldest first. Axes are stored as 16-bit fixed
+     * point and buttons as a 16-bit mask, with frame times relative to the
+     * oldest frame.
+     * @param url the file to write, eg "file:///replay.bin"
+     * @throws IOException if the file cannot be written
+     */
+    public void save(final String url) throws IOException {
+        final FileConnection file = (FileConnection) Connector.open(url, Connector.READ_WRITE);
+        DataOutputStream out = null;
+        try {
+            if (file.exists()) {
+                file.delete();
+            }
+            file.create();
+            out = file.openDataOutputStream();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(pads);
+            out.writeInt(channels);
+            out.writeInt(size);
+            for (int frame = 0; frame < size; ++frame) {
+                out.writeInt((int) getTime(frame));
+                for (int p = 0; p < pads; ++p) {
+                    final int base = (frame * pads + p) * AXES;
+                    for (int a = 0; a < AXES; ++a) {
+                        out.writeShort((int) (axes[base + a] * AXIS_SCALE));
+                    }
+                    out.writeShort(buttons[frame * pads + p]);
+                }
+                for (int c = 0; c < channels; ++c) {
+                    out.writeFloat(values[frame * channels + c]);
+                }
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+            file.close();
+        }
+    }
+    
+    /**
+     * Replace the contents of this recording with frames saved by save().
+     * Frames beyond this recording's capacity are dropped.
+     * @param url the file to read, eg "file:///replay.bin"
+     * @throws IOException if the file cannot be read, or was recorded with a
+     * different number of pads or channels
+     */
+    public void load(final String url) throws IOException {
+        clear();
+        final DataInputStream in = Connector.openDataInputStream(url);
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an input recording: " + url);
+            }
+            if (in.readInt() != pads || in.readInt() != channels) {
+                throw new IOException("Recording layout does not match: " + url);
+            }
+            final int frames = Math.min(in.readInt(), capacity);
+            for (int i = 0; i < frames; ++i) {
+                times[i] = in.readInt();
+                for (int p = 0; p < pads; ++p) {
+                    final int base = (i * pads + p) * AXES;
+                    for (int a = 0; a < AXES; ++a) {
+                        axes[base + a] = in.readShort() / AXIS_SCALE;
+                    }
+                    buttons[i * pads + p] = in.readShort() & 0xFFFF;
+                }
+                for (int c = 0; c < channels; ++c) {
+                    values[i * channels + c] = in.readFloat();
+                }
+            }
+            size = frames;
+        } finally {
+            in.close();
+        }
+    }
+}
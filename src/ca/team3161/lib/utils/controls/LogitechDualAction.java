@@ -94,6 +94,10 @@ public class LogitechDualAction implements Gamepad {
     private float inversion = 1.0f;
     private final float DEADZONE;
     
+    /* When set, inputs are read from this recording rather than the backingHID */
+    private volatile InputRecording playback;
+    private volatile int playbackPad;
+    
     /**
      * @param port the USB port for this controller
      * @param deadzone how large of a deadzone to use
@@ -119,13 +123,40 @@ public class LogitechDualAction implements Gamepad {
      * deadzone
      */
     private float getAxisHelper(final int axis) {
-        final float val = (float)backingHID.getRawAxis(axis);
+        final InputRecording rec = playback;
+        final float val = rec != null ? rec.getAxis(playbackPad, axis) : (float)backingHID.getRawAxis(axis);
         if (Math.abs(val) < DEADZONE) {
             return 0.0f;
         }
         return val;
     }
     
+    /**
+     * Get a button value
+     * @param button which button to get
+     * @return true iff the button is currently depressed
+     */
+    private boolean getButtonHelper(final int button) {
+        final InputRecording rec = playback;
+        if (rec != null) {
+            return rec.getButton(playbackPad, button);
+        }
+        return backingHID.getRawButton(button);
+    }
+    
+    /**
+     * Read inputs from a recording rather than the physical controller, so
+     * that recorded inputs pass through exactly the same handling (deadzone,
+     * inversion) as live ones. The frame read is chosen with
+     * InputRecording.setCursor().
+     * @param recording the recording to play back, or null to return to live input
+     * @param pad which recorded pad this Gamepad plays back
+     */
+    public void setPlayback(final InputRecording recording, final int pad) {
+        this.playbackPad = pad;
+        this.playback = recording;
+    }
+    
     /**
      * Get the left thumbstick X-axis
      * @return the X-axis value of the left joystick
@@ -179,7 +210,7 @@ public class LogitechDualAction implements Gamepad {
      * @return true iff the button is currently depressed
      */
     public boolean getButton(final int button) {
-        return backingHID.getRawButton(button);
+        return getButtonHelper(button);
     }
     
     /**
@@ -187,7 +218,7 @@ public class LogitechDualAction implements Gamepad {
      * @return whether the left bumper is currently depressed
      */
     public boolean getLeftBumper() {
-        return backingHID.getRawButton(LEFT_BUMPER);
+        return getButtonHelper(LEFT_BUMPER);
     }
     
     /**
@@ -195,7 +226,7 @@ public class LogitechDualAction implements Gamepad {
      * @return whether the right bumper is currently depressed
      */
     public boolean getRightBumper() {
-        return backingHID.getRawButton(RIGHT_BUMPER);
+        return getButtonHelper(RIGHT_BUMPER);
     }
         
     /**
@@ -203,7 +234,7 @@ public class LogitechDualAction implements Gamepad {
      * @return whether the left trigger is currently depressed
      */
     public boolean getLeftTrigger() {
-        return backingHID.getRawButton(LEFT_TRIGGER);
+        return getButtonHelper(LEFT_TRIGGER);
     }
         
     /**
@@ -211,7 +242,7 @@ public class LogitechDualAction implements Gamepad {
      * @return whether the right trigger is currently depressed
      */
     public boolean getRightTrigger() {
-        return backingHID.getRawButton(RIGHT_TRIGGER);
+        return getButtonHelper(RIGHT_TRIGGER);
     }
     
     /**
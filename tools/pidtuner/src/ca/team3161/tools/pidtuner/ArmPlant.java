@@ -0,0 +1,94 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.tools.pidtuner;
+
+/**
+ * A motor-driven arm pivoting under gravity, like the Shooter fork.
+ * Angles are in degrees: 0 hangs straight down, 90 points straight forward
+ * and 180 points straight up.
+ */
+public class ArmPlant extends Plant {
+    
+    private final double motorAccel, gravityAccel, damping, deadband;
+    private final float minAngle, maxAngle;
+    private double angle, velocity;
+    
+    /**
+     * @param motorAccel the angular acceleration (degrees/s^2) at full output.
+     * Negative if a positive output lowers the arm.
+     * @param gravityAccel the angular acceleration (degrees/s^2) due to gravity
+     * with the arm horizontal
+     * @param damping viscous friction (1/s)
+     * @param deadband the smallest output which moves the arm
+     * @param minAngle the lower hard stop (degrees)
+     * @param maxAngle the upper hard stop (degrees)
+     */
+    public ArmPlant(final double motorAccel, final double gravityAccel, final double damping,
+            final double deadband, final float minAngle, final float maxAngle) {
+        this.motorAccel = motorAccel;
+        this.gravityAccel = gravityAccel;
+        this.damping = damping;
+        this.deadband = deadband;
+        this.minAngle = minAngle;
+        this.maxAngle = maxAngle;
+    }
+    
+    public void reset(final float position) {
+        this.angle = position;
+        this.velocity = 0.0;
+    }
+    
+    public void step(final float output, final double dt) {
+        final double accel = motorAccel * friction(output, deadband)
+                - gravityAccel * Math.sin(Math.toRadians(angle))
+                - damping * velocity;
+        velocity += accel * dt;
+        angle += velocity * dt;
+        if (angle < minAngle) {
+            angle = minAngle;
+            velocity = 0.0;
+        } else if (angle > maxAngle) {
+            angle = maxAngle;
+            velocity = 0.0;
+        }
+    }
+    
+    public double getVelocity() {
+        return velocity;
+    }
+    
+    public float getValue() {
+        return (float) angle;
+    }
+    
+    public float getMinAngle() {
+        return minAngle;
+    }
+    
+    public float getMaxAngle() {
+        return maxAngle;
+    }
+}
@@ -0,0 +1,68 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.tools.pidtuner;
+
+/**
+ * One side of a drivetrain, or the whole robot turning in place: the speed
+ * follows the motor output with a first-order lag, and the position is the
+ * integral of the speed.
+ */
+public class DrivetrainPlant extends Plant {
+    
+    private final double maxSpeed, timeConstant, deadband;
+    private double position, velocity;
+    
+    /**
+     * @param maxSpeed the steady speed at full output, in sensor units per second.
+     * Negative if a positive output decreases the sensor value.
+     * @param timeConstant the time (seconds) to reach 63% of a new speed
+     * @param deadband the smallest output which moves the robot
+     */
+    public DrivetrainPlant(final double maxSpeed, final double timeConstant, final double deadband) {
+        this.maxSpeed = maxSpeed;
+        this.timeConstant = timeConstant;
+        this.deadband = deadband;
+    }
+    
+    public void reset(final float position) {
+        this.position = position;
+        this.velocity = 0.0;
+    }
+    
+    public void step(final float output, final double dt) {
+        final double target = maxSpeed * friction(output, deadband);
+        velocity += (target - velocity) * dt / timeConstant;
+        position += velocity * dt;
+    }
+    
+    public double getVelocity() {
+        return velocity;
+    }
+    
+    public float getValue() {
+        return (float) position;
+    }
+}
@@ -0,0 +1,172 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.tools.pidtuner;
+
+import ca.team3161.iapetus.ForkPid;
+import ca.team3161.iapetus.RobotConstants;
+import ca.team3161.lib.robot.pid.MedianPidSrc;
+import ca.team3161.lib.robot.pid.PID;
+import ca.team3161.lib.robot.pid.PIDulum;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Desktop tool which searches for better PID gains for Iapetus' loops by
+ * simulating candidate gains against plant models, in parallel across all
+ * cores. Usage: PidTuner drive|turn|fork [steps]
+ * The plant parameters below are estimates; measure the real mechanism and
+ * adjust them before trusting the results.
+ */
+public final class PidTuner {
+    
+    /* How many of the best candidates to print */
+    private static final int KEEP = 10;
+    
+    /* Scale factors applied to the baseline kP and kD */
+    private static final float MIN_SCALE = 0.25f, MAX_SCALE = 4.0f;
+    
+    /* kI candidates, as fractions of kP */
+    private static final float[] I_FRACTIONS = {0.0f, 0.002f, 0.005f, 0.01f, 0.02f, 0.05f};
+    
+    private PidTuner() {
+    }
+    
+    /**
+     * One side of the drivetrain driving RobotConstants.Auto.DRIVE_DISTANCE.
+     * PIDDrivetrain negates the target, and the encoders count down when
+     * driving forward.
+     */
+    private static final TuningProblem DRIVE = new TuningProblem("drive", 350.0f,
+            new float[] {-0.008f, 0.0f, 0.018f},
+            new float[][] {{0.0f, -RobotConstants.Auto.DRIVE_DISTANCE}, {0.0f, -3000.0f}}, 6.0) {
+        protected Plant createPlant() {
+            return new DrivetrainPlant(-9000.0, 0.3, 0.1);
+        }
+    };
+    
+    /**
+     * The drivetrain turning in place, measured by the gyro
+     */
+    private static final TuningProblem TURN = new TuningProblem("turn", 4.0f,
+            new float[] {0.9f, 0.0f, 0.6f},
+            new float[][] {{0.0f, 180.0f}, {0.0f, 15.0f}}, 4.0) {
+        protected Plant createPlant() {
+            return new DrivetrainPlant(400.0, 0.2, 0.15);
+        }
+    };
+    
+    /**
+     * The Shooter fork moving between its preset positions, with the loop
+     * built by ForkPid exactly as the Shooter builds it. The SensorSnapshot
+     * on the robot reads the median filter once per iteration, as pid() does here.
+     */
+    private static final TuningProblem FORK = new TuningProblem("fork", ForkPid.DEADBAND,
+            new float[] {ForkPid.KP, ForkPid.KI, ForkPid.KD},
+            new float[][] {
+                {RobotConstants.Positions.START, RobotConstants.Positions.SHOOTING},
+                {RobotConstants.Positions.SHOOTING, RobotConstants.Positions.INTAKE},
+                {RobotConstants.Positions.INTAKE, RobotConstants.Positions.LOWGOAL},
+                {RobotConstants.Positions.LOWGOAL, RobotConstants.Positions.TRUSS}
+            }, 3.0) {
+        protected Plant createPlant() {
+            return new ArmPlant(-2500.0, 900.0, 8.0, 0.05, 40.0f, 190.0f);
+        }
+        protected PID createPid(final Plant plant, final float kP, final float kI, final float kD) {
+            return ForkPid.configure(new PIDulum(new MedianPidSrc(plant, ForkPid.MEDIAN_WINDOW),
+                    ForkPid.DEADBAND, kP, kI, kD, ForkPid.OFFSET_ANGLE, ForkPid.TORQUE_CONSTANT) {
+                protected long getTime() {
+                    return plant.getTime();
+                }
+            });
+        }
+    };
+    
+    /**
+     * kP and kD are scaled from the baseline, keeping their signs.
+     * @param problem the problem being tuned
+     * @param steps the number of scale factors to try for each of kP and kD
+     * @return every {kP, kI, kD} to evaluate
+     */
+    private static float[][] candidates(final TuningProblem problem, final int steps) {
+        final float[] base = problem.getBaseline();
+        final float[][] result = new float[steps * steps * I_FRACTIONS.length][];
+        int n = 0;
+        for (int p = 0; p < steps; ++p) {
+            final float kP = base[0] * scale(p, steps);
+            for (int d = 0; d < steps; ++d) {
+                final float kD = base[2] * scale(d, steps);
+                for (int i = 0; i < I_FRACTIONS.length; ++i) {
+                    result[n++] = new float[] {kP, kP * I_FRACTIONS[i], kD};
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * @return the index'th of count scale factors, evenly spaced on a log scale
+     */
+    private static float scale(final int index, final int count) {
+        final double t = count > 1 ? (double) index / (count - 1) : 0.5;
+        return (float) (MIN_SCALE * Math.pow(MAX_SCALE / MIN_SCALE, t));
+    }
+    
+    public static void main(final String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: PidTuner drive|turn|fork [steps]");
+            System.exit(1);
+        }
+        final TuningProblem problem;
+        if (args[0].equals(DRIVE.getName())) {
+            problem = DRIVE;
+        } else if (args[0].equals(TURN.getName())) {
+            problem = TURN;
+        } else if (args[0].equals(FORK.getName())) {
+            problem = FORK;
+        } else {
+            System.err.println("Unknown loop: " + args[0]);
+            System.exit(1);
+            return;
+        }
+        final int steps = args.length > 1 ? Integer.parseInt(args[1]) : 17;
+        final float[][] candidates = candidates(problem, steps);
+        final float[] base = problem.getBaseline();
+        
+        System.out.println("Current gains:");
+        System.out.println("  " + problem.evaluate(base[0], base[1], base[2]));
+        
+        final ForkJoinPool pool = new ForkJoinPool();
+        final long start = System.nanoTime();
+        final List<Score> best = pool.invoke(new SearchTask(problem, candidates, 0, candidates.length, KEEP));
+        final long elapsed = (System.nanoTime() - start) / 1000000;
+        
+        System.out.println("Best of " + candidates.length + " candidates (" + elapsed + "ms on "
+                + pool.getParallelism() + " threads; ! = did not settle):");
+        for (final Score s : best) {
+            System.out.println("  " + s);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.tools.pidtuner;
+
+import ca.team3161.lib.robot.pid.AnglePidSrc;
+
+/**
+ * A simulated mechanism, driven by a PWM-style output in [-1, 1] and
+ * measured through the PIDSrc interface, so that the robot's own PID classes
+ * can be run against it unchanged.
+ */
+public abstract class Plant implements AnglePidSrc {
+    
+    /* Simulated time (microseconds), advanced once per loop iteration */
+    private long time = 0;
+    
+    /**
+     * Put the mechanism at rest at a position
+     * @param position the starting position, in sensor units
+     */
+    public abstract void reset(float position);
+    
+    /**
+     * Advance the simulation
+     * @param output the motor output, in [-1, 1]
+     * @param dt the time step (seconds)
+     */
+    public abstract void step(float output, double dt);
+    
+    /**
+     * @return the current rate of change of the position, in sensor units per second
+     */
+    public abstract double getVelocity();
+    
+    /**
+     * @return the simulated time (microseconds), for PID loops in timed mode
+     */
+    public final long getTime() {
+        return time;
+    }
+    
+    /**
+     * Advance the simulated clock by one loop iteration
+     * @param dt the loop period (seconds)
+     */
+    final void advanceTime(final double dt) {
+        time += Math.round(dt * 1000000.0);
+    }
+    
+    /**
+     * Inherited from AnglePidSrc. Not meaningful for every plant.
+     * @return the lower bound of the position
+     */
+    public float getMinAngle() {
+        return -Float.MAX_VALUE;
+    }
+    
+    /**
+     * Inherited from AnglePidSrc. Not meaningful for every plant.
+     * @return the upper bound of the position
+     */
+    public float getMaxAngle() {
+        return Float.MAX_VALUE;
+    }
+    
+    /**
+     * Apply a static friction deadband to a motor output
+     * @param output the motor output
+     * @param deadband outputs smaller than this do not move the mechanism
+     * @return the effective output
+     */
+    protected static double friction(final float output, final double deadband) {
+        if (Math.abs(output) < deadband) {
+            return 0.0;
+        }
+        return output;
+    }
+}
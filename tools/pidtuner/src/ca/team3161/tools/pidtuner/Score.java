@@ -0,0 +1,98 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.tools.pidtuner;
+
+/**
+ * The step response of one set of gains, averaged over every step of a
+ * TuningProblem. Lower cost is better.
+ */
+public class Score implements Comparable<Score> {
+    
+    /* Weights of each metric in the cost */
+    private static final double RISE_WEIGHT = 0.5;
+    private static final double OVERSHOOT_WEIGHT = 4.0;
+    private static final double SATURATION_WEIGHT = 1.0;
+    
+    private final float kP, kI, kD;
+    private final double riseTime, overshoot, settlingTime, saturation;
+    private final boolean settled;
+    private final double cost;
+    
+    /**
+     * @param kP P constant
+     * @param kI I constant
+     * @param kD D constant
+     * @param riseTime mean time (seconds) to first cover 90% of the step
+     * @param overshoot mean overshoot, as a fraction of the step size
+     * @param settlingTime mean time (seconds) after which the error stayed within the deadband
+     * @param saturation mean fraction of the time the output was at a limit
+     * @param settled true iff every step settled before the simulation ended
+     */
+    public Score(final float kP, final float kI, final float kD,
+            final double riseTime, final double overshoot, final double settlingTime,
+            final double saturation, final boolean settled) {
+        this.kP = kP;
+        this.kI = kI;
+        this.kD = kD;
+        this.riseTime = riseTime;
+        this.overshoot = overshoot;
+        this.settlingTime = settlingTime;
+        this.saturation = saturation;
+        this.settled = settled;
+        this.cost = settlingTime + RISE_WEIGHT * riseTime + OVERSHOOT_WEIGHT * overshoot
+                + SATURATION_WEIGHT * saturation + (settled ? 0.0 : 2.0 * settlingTime);
+    }
+    
+    public float getP() {
+        return kP;
+    }
+    
+    public float getI() {
+        return kI;
+    }
+    
+    public float getD() {
+        return kD;
+    }
+    
+    public double getCost() {
+        return cost;
+    }
+    
+    public boolean isSettled() {
+        return settled;
+    }
+    
+    public int compareTo(final Score other) {
+        return Double.compare(cost, other.cost);
+    }
+    
+    public String toString() {
+        return String.format("kP=%-10.5g kI=%-10.5g kD=%-10.5g cost=%7.3f rise=%6.3fs overshoot=%5.1f%% settle=%6.3fs%s saturated=%4.1f%%",
+                kP, kI, kD, cost, riseTime, overshoot * 100.0, settlingTime,
+                settled ? " " : "!", saturation * 100.0);
+    }
+}
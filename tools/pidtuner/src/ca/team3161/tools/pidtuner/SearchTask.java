@@ -0,0 +1,85 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.tools.pidtuner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Evaluates a range of candidate gains, splitting the range in half and
+ * forking until each piece is small enough to simulate directly.
+ * Returns the best few candidates, lowest cost first.
+ */
+public class SearchTask extends RecursiveTask<List<Score>> {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final int THRESHOLD = 8;
+    
+    private final TuningProblem problem;
+    private final float[][] candidates;
+    private final int from, to, keep;
+    
+    /**
+     * @param problem the problem to evaluate candidates against
+     * @param candidates each {kP, kI, kD}
+     * @param from the first candidate index (inclusive)
+     * @param to the last candidate index (exclusive)
+     * @param keep how many of the best candidates to return
+     */
+    public SearchTask(final TuningProblem problem, final float[][] candidates,
+            final int from, final int to, final int keep) {
+        this.problem = problem;
+        this.candidates = candidates;
+        this.from = from;
+        this.to = to;
+        this.keep = keep;
+    }
+    
+    protected List<Score> compute() {
+        if (to - from <= THRESHOLD) {
+            final List<Score> scores = new ArrayList<Score>(to - from);
+            for (int i = from; i < to; ++i) {
+                scores.add(problem.evaluate(candidates[i][0], candidates[i][1], candidates[i][2]));
+            }
+            return best(scores);
+        }
+        final int mid = (from + to) >>> 1;
+        final SearchTask left = new SearchTask(problem, candidates, from, mid, keep);
+        final SearchTask right = new SearchTask(problem, candidates, mid, to, keep);
+        left.fork();
+        final List<Score> merged = new ArrayList<Score>(right.compute());
+        merged.addAll(left.join());
+        return best(merged);
+    }
+    
+    private List<Score> best(final List<Score> scores) {
+        Collections.sort(scores);
+        return scores.size() > keep ? new ArrayList<Score>(scores.subList(0, keep)) : scores;
+    }
+}
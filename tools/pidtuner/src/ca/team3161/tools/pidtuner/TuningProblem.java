@@ -0,0 +1,158 @@
+/* Copyright (c) 2014, FRC3161
+* All rights reserved.
+* 
+* Redistribution and use in source and binary forms, with or without modification,
+* are permitted provided that the following conditions are met:
+* 
+* * Redistributions of source code must retain the above copyright notice, this
+*   list of conditions and the following disclaimer.
+* 
+* * Redistributions in binary form must reproduce the above copyright notice, this
+*   list of conditions and the following disclaimer in the documentation and/or
+*   other materials provided with the distribution.
+* 
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+* ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+* WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+* ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+* (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+* ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+* (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+* SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package ca.team3161.tools.pidtuner;
+
+import ca.team3161.lib.robot.pid.PID;
+
+/**
+ * A PID loop configuration to tune: a plant model, the loop's deadband and
+ * current gains, and a set of step moves to score candidate gains against.
+ * Each move is simulated with the robot's own PID class, iterated every
+ * 20ms in timed mode as on the robot, against the plant's simulated clock.
+ */
+public abstract class TuningProblem {
+    
+    /**
+     * The robot loop period (seconds)
+     */
+    public static final double PERIOD = 0.02;
+    
+    /* Physics steps per loop iteration */
+    private static final int SUBSTEPS = 10;
+    
+    private final String name;
+    private final float deadband;
+    private final float[] baseline;
+    private final float[][] steps;
+    private final double duration;
+    
+    /**
+     * @param name the name of this problem
+     * @param deadband the PID deadband, also used as the settling band
+     * @param baseline the current {kP, kI, kD}
+     * @param steps the moves to simulate, each {start, target}
+     * @param duration how long (seconds) to simulate each move
+     */
+    protected TuningProblem(final String name, final float deadband, final float[] baseline,
+            final float[][] steps, final double duration) {
+        this.name = name;
+        this.deadband = deadband;
+        this.baseline = baseline;
+        this.steps = steps;
+        this.duration = duration;
+    }
+    
+    /**
+     * @return a new plant model, at rest
+     */
+    protected abstract Plant createPlant();
+    
+    /**
+     * Loops which override this must read the time from the plant, see
+     * Plant.getTime(), and use timed mode where the robot does.
+     * @param plant the plant the loop will control
+     * @param kP P constant
+     * @param kI I constant
+     * @param kD D constant
+     * @return a new PID loop, configured as on the robot
+     */
+    protected PID createPid(final Plant plant, final float kP, final float kI, final float kD) {
+        final PID pid = new PID(plant, deadband, kP, kI, kD) {
+            protected long getTime() {
+                return plant.getTime();
+            }
+        };
+        pid.setTimed(Math.round(PERIOD * 1000.0));
+        return pid;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * @return the current {kP, kI, kD}
+     */
+    public float[] getBaseline() {
+        return baseline;
+    }
+    
+    /**
+     * Simulate every move with a set of gains. Safe to call from many threads at once.
+     * @param kP P constant
+     * @param kI I constant
+     * @param kD D constant
+     * @return the averaged step response
+     */
+    public Score evaluate(final float kP, final float kI, final float kD) {
+        final int ticks = (int) (duration / PERIOD);
+        double rise = 0.0, overshoot = 0.0, settle = 0.0, saturation = 0.0;
+        boolean allSettled = true;
+        for (int s = 0; s < steps.length; ++s) {
+            final float start = steps[s][0];
+            final float target = steps[s][1];
+            final float size = Math.abs(target - start);
+            final float direction = Math.signum(target - start);
+            final Plant plant = createPlant();
+            plant.reset(start);
+            final PID pid = createPid(plant, kP, kI, kD);
+            
+            double riseTime = duration;
+            double lastOutside = 0.0;
+            double maxPast = 0.0;
+            int saturated = 0;
+            for (int t = 0; t < ticks; ++t) {
+                final double time = t * PERIOD;
+                final float position = plant.getValue();
+                final float progress = (position - start) * direction;
+                if (riseTime == duration && progress >= 0.9f * size) {
+                    riseTime = time;
+                }
+                maxPast = Math.max(maxPast, progress - size);
+                if (Math.abs(target - position) >= deadband) {
+                    lastOutside = time + PERIOD;
+                }
+                plant.advanceTime(PERIOD);
+                final float output = pid.pid(target);
+                if (Math.abs(output) >= 0.999f) {
+                    ++saturated;
+                }
+                for (int i = 0; i < SUBSTEPS; ++i) {
+                    plant.step(output, PERIOD / SUBSTEPS);
+                }
+            }
+            if (lastOutside >= duration) {
+                allSettled = false;
+            }
+            rise += riseTime;
+            overshoot += size > 0.0f ? maxPast / size : 0.0;
+            settle += lastOutside;
+            saturation += (double) saturated / ticks;
+        }
+        final int n = steps.length;
+        return new Score(kP, kI, kD, rise / n, overshoot / n, settle / n, saturation / n, allSettled);
+    }
+}